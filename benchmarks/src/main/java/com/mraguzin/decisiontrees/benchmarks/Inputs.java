@@ -0,0 +1,61 @@
+package com.mraguzin.decisiontrees.benchmarks;
+
+import com.mraguzin.decisiontrees.CsvLoader;
+import com.mraguzin.decisiontrees.Dataset;
+import com.mraguzin.decisiontrees.SyntheticData;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Resolves a benchmark input: "synthetic" (the default) is generated from the
+ * row, attribute and numeric mix parameters, while "restaurants" and "jobs"
+ * are the bundled examples, for which those parameters are ignored; pin them
+ * to a single value when benchmarking the examples, e.g.
+ * <pre>-p input=jobs,restaurants -p rows=0 -p attributes=0 -p numericFraction=0</pre>
+ * The examples directory defaults to the one next to this module and can be
+ * moved with -Dexamples.dir.
+ * @author mraguzin
+ */
+final class Inputs {
+    static final long SEED = 42;
+
+    private Inputs() {
+    }
+
+    static Dataset load(String input, int rows, int attributes, double numericFraction) {
+        var dir = Path.of(System.getProperty("examples.dir", "../examples"));
+        try {
+            switch (input) {
+                case "restaurants":
+                    return CsvLoader.load(dir.resolve("restaurants.csv"),
+                            x -> !x.toLowerCase().contains("no"));
+                case "jobs":
+                    return CsvLoader.load(dir.resolve("Job_Placement_Data.csv"),
+                            x -> !x.toLowerCase().contains("no"));
+                case "synthetic":
+                    return synthetic(rows, attributes, numericFraction);
+                default:
+                    throw new IllegalArgumentException("Unknown input " + input);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Uniform numerical attributes and categorical ones with 4 values each,
+     * with the default planted rule and noise of {@link SyntheticData}.
+     */
+    private static Dataset synthetic(int rows, int attributes, double numericFraction) {
+        int nNumeric = (int)Math.round(attributes * numericFraction);
+        var cardinalities = new int[attributes - nNumeric];
+        Arrays.fill(cardinalities, 4);
+        var distributions = new SyntheticData.Distribution[nNumeric];
+        Arrays.fill(distributions, SyntheticData.Distribution.UNIFORM);
+
+        return new SyntheticData().setRows(rows).setCategorical(cardinalities)
+                .setNumeric(distributions).setSeed(SEED).dataset();
+    }
+}
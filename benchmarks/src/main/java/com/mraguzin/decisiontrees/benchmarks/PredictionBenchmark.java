@@ -0,0 +1,102 @@
+package com.mraguzin.decisiontrees.benchmarks;
+
+import com.mraguzin.decisiontrees.BuildOptions;
+import com.mraguzin.decisiontrees.CompiledTree;
+import com.mraguzin.decisiontrees.DecisionTree;
+import com.mraguzin.decisiontrees.DepthFirstTree;
+import com.mraguzin.decisiontrees.MappedTree;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of a single prediction, cycling through the training examples so
+ * that every path of the tree gets exercised. The tree is pruned first, as it
+ * would be when deployed.
+ * @author mraguzin
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PredictionBenchmark {
+    @Param({"synthetic"})
+    public String input;
+    @Param({"10000", "100000"})
+    public int rows;
+    @Param({"8", "32"})
+    public int attributes;
+    @Param({"0.0", "0.5", "1.0"})
+    public double numericFraction;
+
+    private DecisionTree tree;
+    private CompiledTree compiled;
+    private MappedTree mapped;
+    private double[][] features; // encoded examples
+    private Map<String, String>[] examples;
+    private int next;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        var data = Inputs.load(input, rows, attributes, numericFraction);
+        tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(Inputs.SEED));
+        tree.prune();
+        compiled = tree.compile();
+        var file = Files.createTempFile("benchmark", ".model");
+        file.toFile().deleteOnExit();
+        compiled.save(file);
+        mapped = MappedTree.load(file);
+
+        int n = data.attributeCount();
+        features = new double[data.size()][n];
+        examples = new Map[data.size()];
+        for (int row = 0; row < data.size(); ++row) {
+            var values = new String[n];
+            examples[row] = new HashMap<>();
+            for (int i = 0; i < n; ++i) {
+                values[i] = data.isNumeric(i) ? Double.toString(data.numbers(i).get(row))
+                        : data.dictionary(i).get(data.codes(i).get(row));
+                examples[row].put(data.attribute(i), values[i]);
+            }
+            compiled.encode(values, features[row]);
+        }
+    }
+
+    private int nextRow() {
+        int row = next;
+        next = row + 1 == features.length ? 0 : row + 1;
+        return row;
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        return compiled.predict(features[nextRow()]);
+    }
+
+    @Benchmark
+    public boolean mapped() {
+        return mapped.predict(features[nextRow()]);
+    }
+
+    @Benchmark
+    public boolean treeFromMap() {
+        return tree.predict(examples[nextRow()]);
+    }
+}
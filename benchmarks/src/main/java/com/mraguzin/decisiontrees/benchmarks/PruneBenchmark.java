@@ -0,0 +1,59 @@
+package com.mraguzin.decisiontrees.benchmarks;
+
+import com.mraguzin.decisiontrees.BuildOptions;
+import com.mraguzin.decisiontrees.Dataset;
+import com.mraguzin.decisiontrees.DecisionTree;
+import com.mraguzin.decisiontrees.DepthFirstTree;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a single chi-squared pruning pass. Pruning destroys the tree, so
+ * every invocation gets a freshly built one; only prune() itself is timed.
+ * @author mraguzin
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PruneBenchmark {
+    @Param({"synthetic"})
+    public String input;
+    @Param({"10000", "100000"})
+    public int rows;
+    @Param({"8", "32"})
+    public int attributes;
+    @Param({"0.0", "0.5", "1.0"})
+    public double numericFraction;
+
+    private Dataset data;
+    private DecisionTree tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = Inputs.load(input, rows, attributes, numericFraction);
+    }
+
+    @Setup(Level.Iteration)
+    public void buildTree() {
+        tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(Inputs.SEED));
+    }
+
+    @Benchmark
+    public boolean prune() {
+        return tree.prune();
+    }
+}
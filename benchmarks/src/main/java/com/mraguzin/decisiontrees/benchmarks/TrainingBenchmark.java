@@ -0,0 +1,79 @@
+package com.mraguzin.decisiontrees.benchmarks;
+
+import com.mraguzin.decisiontrees.BuildOptions;
+import com.mraguzin.decisiontrees.BreadthFirstTree;
+import com.mraguzin.decisiontrees.Dataset;
+import com.mraguzin.decisiontrees.DecisionTree;
+import com.mraguzin.decisiontrees.DepthFirstTree;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Training throughput: trees built per second from an already encoded
+ * dataset, and training rows per second (the "rows" counter). Parsing is left
+ * out, see {@link Inputs}.
+ * @author mraguzin
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrainingBenchmark {
+    @Param({"synthetic"})
+    public String input;
+    @Param({"10000", "100000"})
+    public int rows;
+    @Param({"8", "32"})
+    public int attributes;
+    @Param({"0.0", "0.5", "1.0"})
+    public double numericFraction;
+
+    private Dataset data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = Inputs.load(input, rows, attributes, numericFraction);
+    }
+
+    /**
+     * Counts the training rows consumed, which JMH reports as rows/s.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Rows {
+        public long rows;
+    }
+
+    @Benchmark
+    public DecisionTree depthFirst(Rows counter) {
+        counter.rows += data.size();
+        return new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(Inputs.SEED));
+    }
+
+    @Benchmark
+    public DecisionTree depthFirstParallel(Rows counter) {
+        counter.rows += data.size();
+        return new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(Inputs.SEED)
+                .scoreInParallel().buildInParallel());
+    }
+
+    @Benchmark
+    public DecisionTree breadthFirst(Rows counter) {
+        counter.rows += data.size();
+        return new BreadthFirstTree(data, 0.05, new BuildOptions().setSeed(Inputs.SEED));
+    }
+}
@@ -1,355 +1,644 @@
 package com.mraguzin.decisiontrees;
 
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
 import java.text.DecimalFormat;
+import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Set of attributes and their values. This class stores all the attributes and their
- * value sets corresponding to a single decision tree learning scenario.
+ * value sets corresponding to a single decision tree learning scenario. Each
+ * value of an attribute is identified by its code: for categorical attributes
+ * that is its dictionary code in the {@link Dataset}, while numerical ones get
+ * discretised via supervised binning and their values are the bin indices.
+ * <p>
+ * Binning is exact by default, which takes a sort of every numerical column.
+ * In the approximate mode (see
+ * {@link BuildOptions#approximateDiscretisation(double)}) every numerical
+ * attribute is summarised instead by a {@link QuantileSketch} of each class,
+ * built in one pass over chunks of the rows in parallel, and the split points
+ * are chosen among the values the sketches retain.
  * @author mraguzin
  */
 public class AttributeSet {
-    private enum Type {CATEGORICAL, NUMERICAL}; // numeric atts. get discretised via
-    // supervised binning and thus require special handling
-    
-    private HashMap<String, List<String>> stringValues = new HashMap<>();
-    private HashMap<String, HashSet<String>> stringValueset = new HashMap<>();
-    private HashMap<String, List<Pair<Double, Boolean>>> numericValues = new HashMap<>();
-    private HashMap<String, List<Double>> discretisedNumericValues;
-    private final int positives, negatives;
-    private int inputCounter;
-    private final int nAttributes;
+    private final Dataset data;
+    private final List<List<?>> values; // code -> value; the dictionary for
+    // categorical attributes, the (upper) split point thresholds for numerical
+    // ones
+    private final IntBuffer[] codes; // per-row value codes of every attribute
+    private final double[][] cutPoints; // split points of numerical attributes,
+    // without the final +∞; null for categorical ones
+    private final String[][] labels; // code -> edge label
+    private final List<Map<String, Integer>> codeOf; // value -> code of
+    // categorical attributes; null for numerical ones
+    private final int[] fitRows; // rows the bins are fitted on; null for all
+    private final int positives, negatives; // ...and their class counts
+    private final double sketchError; // 0 for exact binning
     private final static int MAX_SPLITS = 10;
-    private int attributeSplitCount;
-    
-    public AttributeSet(int nAttributes, int nPositives, int nNegatives) {
-        this.nAttributes = nAttributes - 1; // ignore the class input attribute
-        this.positives = nPositives;
-        this.negatives = nNegatives;
+    private final static int MIN_CHUNK_SIZE = 65536; // rows sketched by a
+    // single task, at the least
+    private final static int MAX_CHUNKS = 64; // fixed, so that the sketches
+    // do not depend on the number of cores
+
+    /**
+     * Builds the value sets of all the input attributes of the given dataset. The
+     * numeric attributes are discretised right away, so that every attribute
+     * can afterwards be treated as a categorical one.
+     * @param data
+     */
+    public AttributeSet(Dataset data) {
+        this(data, null, null, 0);
     }
-    
+
     /**
-     * Associates the provided value list with the given attribute. This method puts
-     * the provided list of (value,classification) pairs into their properly
-     * typed list. It also takes care of all necessary conversion in case of
-     * numeric inputs (it assumes that, if the first seen example is numeric,
-     * then all the remaining entries will be as well) and finally, after all
-     * known attributes have been processed, triggers the discretisation phase
-     * in case the attribute is numerical.
-     * @param attribute
-     * @param values 
+     * Builds the value sets, recording the time spent on discretisation.
+     * @param data
+     * @param metrics Where to record it; may be null
      */
-    public void put(String attribute, List<Pair<String, Boolean>> values) {
-        boolean isNumeric = true;
-        
-        ++inputCounter;
-        
-        try {
-            Double.valueOf(values.get(0).x);
-        } catch (NumberFormatException ex) {
-            isNumeric = false;
-        }
-        
-        if (isNumeric) {
-            System.out.println("NUMERIC ATTRIBUTE");
-            for (var value : values) {
-                
-                if (numericValues.get(attribute) == null) {
-                List<Pair<Double, Boolean>> doubleList = new ArrayList<>();
-                doubleList.add(new Pair<>(Double.valueOf(value.x), value.y));
-                numericValues.put(attribute, doubleList);
-            }
-                else {
-                    var doubleList = numericValues.get(attribute);
-                    doubleList.add(new Pair<>(Double.valueOf(value.x), value.y));
-                    numericValues.put(attribute, doubleList);
-                }
-            }
-        }
-        
-        else {        
-        for (var value : values) {            
-            if (stringValueset.get(attribute) == null) {
-                var stringSet = new HashSet<String>();
-                stringSet.add(value.x);
-                stringValueset.put(attribute, stringSet);
-            }
-            else {
-                var stringSet = stringValueset.get(attribute);
-                stringSet.add(value.x);
-                stringValueset.put(attribute, stringSet);
-            }
-        }
+    public AttributeSet(Dataset data, BuildMetrics metrics) {
+        this(data, null, metrics, 0);
+    }
+
+    /**
+     * Builds the value sets as the given learner settings say: exactly or
+     * approximately, recording the time spent into their metrics, if any.
+     * @param data
+     * @param options
+     */
+    public AttributeSet(Dataset data, BuildOptions options) {
+        this(data, null, options);
+    }
+
+    /**
+     * Builds the value sets, fitting the numerical bins on the given rows
+     * only, so that the examples held out for evaluation do not influence
+     * them. Every row still gets a value code.
+     * @param data
+     * @param fitRows Indices of the rows to fit on; null for all of them
+     * @param options
+     */
+    AttributeSet(Dataset data, int[] fitRows, BuildOptions options) {
+        this(data, fitRows, options.getMetrics(), options.getDiscretisationError());
+    }
+
+    private AttributeSet(Dataset data, int[] fitRows, BuildMetrics metrics,
+            double sketchError) {
+        this.data = data;
+        this.fitRows = fitRows;
+        this.sketchError = sketchError;
+        if (fitRows == null) {
+            this.positives = data.positives();
+            this.negatives = data.negatives();
+        } else {
+            this.positives = Helpers.countPositives(data.classes(), fitRows, 0,
+                    fitRows.length);
+            this.negatives = fitRows.length - positives;
         }
-        
-        System.out.println("natts=" + (stringValueset.size() + numericValues.size()));
-        System.out.println(stringValues);
-        
-        if (inputCounter == nAttributes) { // trigger post-processing
-            for (Map.Entry<String, HashSet<String>> current : stringValueset.entrySet()) {
-                String name = current.getKey();
-                var tmpList = new ArrayList();
-                tmpList.addAll(current.getValue());
-                stringValues.put(name, tmpList);                
+        int n = data.attributeCount();
+        values = new ArrayList<>(Collections.nCopies(n, null)); // filled in
+        // concurrently, so never resized
+        codes = new IntBuffer[n];
+        cutPoints = new double[n][];
+        labels = new String[n][];
+        codeOf = new ArrayList<>(Collections.nCopies(n, null));
+        var df = DecimalFormat.getInstance();
+        df.setMaximumFractionDigits(2);
+
+        IntStream.range(0, n).parallel().filter(data::isNumeric)
+                .forEach(i -> discretise(i, metrics)); // the attributes are independent
+
+        for (int i = 0; i < n; ++i) {
+            if (!data.isNumeric(i)) {
+                var dictionary = data.dictionary(i);
+                values.set(i, dictionary);
+                codes[i] = data.codes(i);
+                var lookup = new HashMap<String, Integer>();
+                for (int code = 0; code < dictionary.size(); ++code)
+                    lookup.put(dictionary.get(code), code);
+                codeOf.set(i, lookup);
             }
-            discretiseAllNumericAttributes();
-            
-            //clean up useless collections
-            stringValueset = null;
-            numericValues = null;
+
+            labels[i] = new String[values.get(i).size()];
+            for (int code = 0; code < labels[i].length; ++code)
+                labels[i][code] = makeLabel(i, code, df);
         }
-            
     }
-    
-    private boolean isNumeric(String attribute) {
-        return discretisedNumericValues.containsKey(attribute);
+
+    private boolean isNumeric(int attribute) {
+        return data.isNumeric(attribute);
+    }
+
+    /**
+     * Gets the value code of every example for the given attribute. The returned
+     * buffer is shared and must not be modified; only its absolute get
+     * methods may be used.
+     * @param attribute
+     * @return Codes, one per dataset row: the dataset's own column for
+     * categorical attributes and the bins for numerical ones.
+     */
+    public IntBuffer codes(int attribute) {
+        return codes[attribute];
     }
-    
+
     /**
-     * Checks whether the given attribute value matches the learned values.Specifically,
- for generic attributes this simply reduces to equality, but for numerical
- ones it necessitates a search, since we only store split point thresholds.
-     * @param attribute The name of the input attribute
-     * @param input First value to compare with, usually from user input
-     * @param value Second value to compare with; supposed to be the learned datum
-     * @return Whether the input matches the learned datum or not.
+     * Finds the value code the given input maps to. Specifically, for generic
+     * attributes this is a dictionary lookup, but for numerical ones it
+     * necessitates a search, since we only store split point thresholds.
+     * @param attribute
+     * @param input The value, usually from user input
+     * @return The code or -1 if the value was never seen during training.
      */
-    public boolean containedIn(String attribute, String input, Object value ) {
+    public int encode(int attribute, String input) {
+        if (isNumeric(attribute))
+            return findBin(attribute, Double.parseDouble(input));
+        else
+            return codeOf.get(attribute).getOrDefault(input, -1);
+    }
+
+    /**
+     * Produces a label string describing this attribute's value. Suitable for labeling
+     * decision tree edges. The labels are all made up front, so this is a
+     * plain array lookup.
+     * @param attribute
+     * @param code
+     * @return The label
+     */
+    public String getLabel(int attribute, int code) {
+        return labels[attribute][code];
+    }
+
+    private String makeLabel(int attribute, int code, NumberFormat df) {
         if (isNumeric(attribute)) {
-            double numInput = Double.parseDouble(input);
-            // search for the right interval
-            int inputBin = findBin(attribute, numInput);
-            int valueBin = findBin(attribute, (Double)value);
-            return inputBin == valueBin;            
-        }
-        else {
-            // it's just a categorical attribute
-            return input.equals(value.toString());
+            var cuts = cutPoints[attribute];
+            if (code == 0)
+                return "≤" + df.format(cuts.length == 0 ? Double.POSITIVE_INFINITY
+                        : cuts[0]);
+            else if (code == cuts.length)
+                return ">" + df.format(cuts[cuts.length - 1]);
+            else
+                return df.format(cuts[code - 1]) +
+                        "-" + df.format(cuts[code]); // an [x,y> range
         }
+
+        else
+            return values.get(attribute).get(code).toString();
     }
-    
+
     /**
-     * Produces a label string describing this attribute's value. Suitable for labeling
-     * decision tree edges.
+     * Produces a label string describing the given attribute value. This is the
+     * label of the edge an example with such a value follows.
      * @param attribute
      * @param value
      * @return The label
      */
     public String getLabel(String attribute, Object value) {
-        if (isNumeric(attribute)) {
-            var df = DecimalFormat.getInstance();
-            df.setMaximumFractionDigits(2);
-            
-            if (!(value instanceof Double))
-                value = Double.valueOf(value.toString());
-            int bin = findBin(attribute, (Double)value);
-            var list = discretisedNumericValues.get(attribute);
-            if (bin == list.size() - 1)
-                return ">" + df.format(list.get(list.size()-2));
-            else if (bin == 0)
-                return "≤" + df.format(list.get(0));
-            else
-                return df.format(list.get(bin - 1)) + 
-                        "-" + df.format(list.get(bin)); // an [x,y> range       
+        int index = data.indexOf(attribute);
+        if (isNumeric(index)) {
+            double number = value instanceof Double ? (Double)value
+                    : Double.parseDouble(value.toString());
+            return labels[index][findBin(index, number)];
         }
-        
+
         else
             return value.toString();
     }
-    
-    private int findBin(String attribute, double value) {
-        var ranges = discretisedNumericValues.get(attribute);
-        
-        for (int i = 0; i < ranges.size(); ++i) {
-            if (value <= ranges.get(i))
-                return i;
+
+    private int findBin(int attribute, double value) {
+        var cuts = cutPoints[attribute];
+        return findBin(cuts, 0, cuts.length, value);
+    }
+
+    /**
+     * Finds the bin a number falls into by binary search over the bins' split
+     * points. Bin i holds the values not exceeding split point i (but
+     * exceeding the previous one); whatever exceeds the last split point, as
+     * well as NaN, belongs to the final, open-ended bin.
+     * @param cutPoints Array holding the sorted split points
+     * @param from Index of the first split point
+     * @param count Number of split points
+     * @param value
+     * @return The bin index, between 0 and count (inclusive).
+     */
+    static int findBin(double[] cutPoints, int from, int count, double value) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (value <= cutPoints[from + mid])
+                hi = mid;
+            else
+                lo = mid + 1;
         }
-        
-        return ranges.size() - 1; // outside the learned range
+
+        return lo;
     }
-    
+
+    /**
+     * Gets the split points of a numerical attribute. The returned array is
+     * shared and must not be modified.
+     * @param attribute
+     * @return The sorted split points; the final bin, past the last of them,
+     * is open-ended.
+     */
+    public double[] getCutPoints(int attribute) {
+        return cutPoints[attribute];
+    }
+
     /**
      * Gets the total number of values for the given attribute.
      * @param attribute
      * @return Number of values attribute can take on.
      */
+    public int size(int attribute) {
+        return values.get(attribute).size();
+    }
+
     public int size(String attribute) {
-        List list = stringValues.get(attribute);
-        if (list == null)
-            list = discretisedNumericValues.get(attribute);
-        if (list == null)
+        int index = data.indexOf(attribute);
+        if (index == -1)
             return -1;
-        
-        return list.size();
+
+        return size(index);
     }
-    
+
     /**
-     * Randomly shuffles the provided attribute's value set. The idea here is to counter
-     * the possibility of very deep trees arising due to an attribute taking on
-     * many possible values. The threshold for using this is defined within the
-     * decision tree learner itself; it proceeds by then only using a smaller
-     * subset of shuffled values.
-     * @param attribute 
+     * Gets the largest number of values any single attribute can take on.
+     * @return Maximum of {@link #size(int)} over all attributes.
      */
-    public void shuffle(String attribute) {
-        List<String> list = stringValues.get(attribute);
-        if (list == null)
-            return;
-        
-        Collections.shuffle(list);
+    public int maxSize() {
+        int max = 0;
+        for (var list : values)
+            max = Math.max(max, list.size());
+
+        return max;
     }
-    
-    public List get(String attribute) {
-        List list = stringValues.get(attribute);
-        if (list != null)
-            return list;
-        else
-            return discretisedNumericValues.get(attribute);
+
+    public List<?> get(String attribute) {
+        int index = data.indexOf(attribute);
+        if (index == -1)
+            return null;
+
+        return values.get(index);
+    }
+
+    /**
+     * Picks a random subset of the provided attribute's value codes. The idea here
+     * is to counter the possibility of very deep trees arising due to an
+     * attribute taking on many possible values. The threshold for using this
+     * is defined within the decision tree learner itself; it proceeds by then
+     * only using a smaller subset of values. Numerical attributes always
+     * yield their first few bins. This does not modify the attribute set, so
+     * it is safe to call concurrently.
+     * @param attribute
+     * @param size
+     * @param random
+     * @return Array of value codes.
+     */
+    public int[] sample(int attribute, int size, SplittableRandom random) {
+        var codeOrder = new int[size(attribute)];
+        for (int i = 0; i < codeOrder.length; ++i)
+            codeOrder[i] = i;
+
+        if (!isNumeric(attribute)) { // partial Fisher-Yates shuffle
+            for (int i = 0; i < size; ++i) {
+                int j = i + random.nextInt(codeOrder.length - i);
+                int tmp = codeOrder[i];
+                codeOrder[i] = codeOrder[j];
+                codeOrder[j] = tmp;
+            }
+        }
+
+        return Arrays.copyOf(codeOrder, size);
     }
-    
-    public List getSublist(String attribute, int size) {
-        List list = stringValues.get(attribute);
-        if (list != null)
-            return list.subList(0, size);
+
+    private void discretise(int attribute, BuildMetrics metrics) {
+        var event = new DiscretisationEvent();
+        event.begin();
+        long start = metrics == null ? 0 : System.nanoTime();
+        if (sketchError > 0)
+            sketch(attribute);
         else
-            return discretisedNumericValues.get(attribute).subList(0, size);
+            discretise(attribute);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.attribute = data.attribute(attribute);
+            event.rows = fitRows == null ? data.size() : fitRows.length;
+            event.splits = cutPoints[attribute].length;
+            event.approximate = sketchError > 0;
+            event.commit();
+        }
+        if (metrics != null)
+            metrics.recordDiscretisation(System.nanoTime() - start);
     }
-    
-    private void discretiseAllNumericAttributes() {
-        discretisedNumericValues = new HashMap<>();
-        for (Map.Entry<String, List<Pair<Double, Boolean>>> entry : numericValues.entrySet()) {
-            // pre-sort the values so that the algorithm below can actually work
-            // (efficiently)
-            entry.getValue().sort((a, b) -> a.x.compareTo(b.x));
-            attributeSplitCount = 0;
-            var splitPointList = bin(positives, negatives, entry.getValue());
-
-            splitPointList.add(Double.POSITIVE_INFINITY); // to catch <last,∞>
-            discretisedNumericValues.put(entry.getKey(), splitPointList);
-            System.out.println(splitPointList);
-            System.out.println("Done with " + entry.getKey());
+
+    private void discretise(int attribute) {
+        DoubleBuffer numbers = data.numbers(attribute);
+        DoubleBuffer fitted = numbers;
+        BitSet classes = data.classes();
+        if (fitRows != null) { // gather the sample to fit on
+            var sample = new double[fitRows.length];
+            classes = new BitSet(fitRows.length);
+            for (int i = 0; i < fitRows.length; ++i) {
+                sample[i] = numbers.get(fitRows[i]);
+                if (data.isPositive(fitRows[i]))
+                    classes.set(i);
+            }
+            fitted = DoubleBuffer.wrap(sample);
         }
+        int n = fitted.limit();
+
+        // sort once: rank the distinct values, then order the rows by rank with a
+        // (stable) counting sort, so that equal values keep their row order
+        var distinct = new double[n];
+        fitted.get(0, distinct);
+        Arrays.sort(distinct);
+        int nDistinct = 0;
+        for (int i = 0; i < n; ++i) {
+            if (nDistinct == 0 || Double.compare(distinct[i], distinct[nDistinct - 1]) != 0)
+                distinct[nDistinct++] = distinct[i];
+        }
+
+        var rank = new int[n];
+        var start = new int[nDistinct + 1];
+        for (int row = 0; row < n; ++row) {
+            rank[row] = Arrays.binarySearch(distinct, 0, nDistinct, fitted.get(row));
+            ++start[rank[row] + 1];
+        }
+        for (int r = 1; r <= nDistinct; ++r)
+            start[r] += start[r - 1];
+
+        var sortedValues = new double[n];
+        var sortedLabels = new BitSet(n);
+        for (int row = 0; row < n; ++row) {
+            int k = start[rank[row]]++;
+            sortedValues[k] = fitted.get(row);
+            if (classes.get(row))
+                sortedLabels.set(k);
+        }
+
+        var binner = new Binner(sortedValues, sortedLabels);
+        binner.bin(0, n, positives, negatives);
+        double[] cuts = Arrays.copyOf(binner.splits, binner.nSplits);
+        setCutPoints(attribute, cuts);
+
+        var binned = new int[data.size()];
+        if (fitRows == null) {
+            var binOfRank = new int[nDistinct]; // every row of a rank shares its bin
+            for (int r = 0; r < nDistinct; ++r)
+                binOfRank[r] = findBin(cuts, 0, cuts.length, distinct[r]);
+            for (int row = 0; row < n; ++row)
+                binned[row] = binOfRank[rank[row]];
+        } else { // the rows left out have no rank
+            for (int row = 0; row < binned.length; ++row)
+                binned[row] = findBin(cuts, 0, cuts.length, numbers.get(row));
+        }
+        codes[attribute] = IntBuffer.wrap(binned);
     }
-    
+
+    private void setCutPoints(int attribute, double[] cuts) {
+        cutPoints[attribute] = cuts;
+        var splitPointList = new ArrayList<Double>(cuts.length + 1);
+        for (double cut : cuts)
+            splitPointList.add(cut);
+        splitPointList.add(Double.POSITIVE_INFINITY); // to catch <last,∞>
+        values.set(attribute, splitPointList);
+    }
+
     /**
-     * Transforms the numerical attribute into a categorical one. It does so by a recursive
-     * partitioning process, maximizing information gain as it goes along the
-     * sorted value set. This algorithm is briefly mentioned in Russell&Norvig
-     * 3rd ed. p720 and sketched <a href=https://www.saedsayad.com/supervised_binning.htm>here</a>.
-     * @param nPositive Number of positive examples in the input list
-     * @param nNegative Number of negative examples in the input list
-     * @param values A list of (value,classification) pairs for a single attribute
-     * @return The list of "optimal" split points.
+     * Approximate counterpart of {@link #discretise(int)}: sketches the
+     * values of each class, chunk by chunk in parallel, merges the chunks'
+     * sketches in order and bins the merged summary. No column is sorted or
+     * copied, and the codes are found by searching the split points.
      */
-    private List<Double> bin(int nPositive, int nNegative, List<Pair<Double, Boolean>> values) {
-        if (attributeSplitCount > MAX_SPLITS)
-            return List.of();
-        if (values.isEmpty() || nNegative + nPositive == 0)
-            return List.of();
-        else if (values.size() == 1)
-            return List.of();
-            //return List.of(values.get(0).x);
-        
-        System.out.println("p=" + nPositive + ", n=" + nNegative);
-        System.out.println(values);
-        
-        double goalEntropy = Helpers.getBooleanEntropy((double)nPositive / (nPositive + nNegative));
-        boolean lastChange = values.get(0).y;
-        double maxGain = Double.MIN_VALUE;
-        double splitThreshold = Double.NaN;
-        int pLeft = lastChange ? 1 : 0;
-        int nLeft = lastChange ? 0 : 1;
-        int sampleSize = nPositive + nNegative;
-        List<Double> splitList = new ArrayList<>(); // this is filled up
-        // recursively and returned at the end
-        int bestLb = 0;
-        int bestRb = 0;
-        int pLeftBest = pLeft;
-        int nLeftBest = nLeft;
-        
-        for (int i = 1; i < values.size(); ++i) {
-            var pair = values.get(i);
-            if (pair.y == true)
-                ++pLeft;
-            else
-                ++nLeft;
-            
-            if (lastChange != pair.y) {
-                Double x = pair.x;
-                double mean = (values.get(i - 1).x + pair.x) * 0.5;
-                //double mean = pair.x;
-                int lb = i;
-                int j;
-                for (j = i+1; j < values.size() &&
-                        values.get(j).x.equals(x); ++j) {                    
-                    if (values.get(j).y == true)
-                        ++pLeft;
-                    else
-                        ++nLeft;
-                    
-                    lastChange = values.get(j).y;
+    private void sketch(int attribute) {
+        DoubleBuffer numbers = data.numbers(attribute);
+        BitSet classes = data.classes();
+        int n = fitRows == null ? data.size() : fitRows.length;
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (n + MAX_CHUNKS - 1) / MAX_CHUNKS);
+        int chunks = (n + chunkSize - 1) / chunkSize;
+
+        var partial = IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+            var sketches = new QuantileSketch[] {new QuantileSketch(sketchError),
+                new QuantileSketch(sketchError)}; // positives, negatives
+            for (int i = chunk * chunkSize; i < Math.min(n, (chunk + 1) * chunkSize); ++i) {
+                int row = fitRows == null ? i : fitRows[i];
+                sketches[classes.get(row) ? 0 : 1].add(numbers.get(row));
+            }
+            return sketches;
+        }).collect(Collectors.toList());
+
+        var sketches = new QuantileSketch[] {new QuantileSketch(sketchError),
+            new QuantileSketch(sketchError)};
+        for (var chunk : partial) { // in chunk order, to stay deterministic
+            sketches[0].merge(chunk[0]);
+            sketches[1].merge(chunk[1]);
+        }
+
+        int retained = sketches[0].retained() + sketches[1].retained();
+        var distinct = new double[retained];
+        var weights = new long[2][retained];
+        int m = QuantileSketch.distinct(sketches, distinct, weights);
+        var binner = new SketchBinner(distinct, weights[0], weights[1]);
+        binner.bin(0, m, sketches[0].count(), sketches[1].count());
+        double[] cuts = Arrays.copyOf(binner.splits, binner.nSplits);
+        setCutPoints(attribute, cuts);
+
+        var binned = new int[data.size()];
+        for (int row = 0; row < binned.length; ++row)
+            binned[row] = findBin(cuts, 0, cuts.length, numbers.get(row));
+        codes[attribute] = IntBuffer.wrap(binned);
+    }
+
+    /**
+     * Supervised binning of a single numerical attribute, working on its values
+     * sorted in ascending order together with their classifications.
+     */
+    private static class Binner {
+        private final double[] values;
+        private final BitSet labels; // set bit means a positive example
+        private double[] splits = new double[MAX_SPLITS + 2];
+        private int nSplits;
+        private int splitCount;
+
+        Binner(double[] values, BitSet labels) {
+            this.values = values;
+            this.labels = labels;
+        }
+
+        /**
+         * Transforms the numerical attribute into a categorical one. It does so by a recursive
+         * partitioning process, maximizing information gain as it goes along the
+         * sorted value set. This algorithm is briefly mentioned in Russell&Norvig
+         * 3rd ed. p720 and sketched <a href=https://www.saedsayad.com/supervised_binning.htm>here</a>.
+         * The "optimal" split points are appended to splits, in ascending order.
+         * @param from Index of the first value of the range to split
+         * @param to Index past the last value of the range
+         * @param nPositive Number of positive examples in the range
+         * @param nNegative Number of negative examples in the range
+         */
+        void bin(int from, int to, int nPositive, int nNegative) {
+            if (splitCount > MAX_SPLITS)
+                return;
+            if (to - from <= 1 || nNegative + nPositive == 0)
+                return;
+
+            double goalEntropy = Helpers.getBooleanEntropy((double)nPositive / (nPositive + nNegative));
+            boolean lastChange = labels.get(from);
+            double maxGain = Double.MIN_VALUE;
+            double splitThreshold = Double.NaN;
+            int pLeft = lastChange ? 1 : 0;
+            int nLeft = lastChange ? 0 : 1;
+            int sampleSize = nPositive + nNegative;
+            int bestLb = 0;
+            int bestRb = 0;
+            int pLeftBest = pLeft;
+            int nLeftBest = nLeft;
+
+            for (int i = from + 1; i < to; ++i) {
+                boolean label = labels.get(i);
+                if (label == true)
+                    ++pLeft;
+                else
+                    ++nLeft;
+
+                if (lastChange != label) {
+                    double x = values[i];
+                    double mean = (values[i - 1] + x) * 0.5;
+                    int lb = i;
+                    int j;
+                    for (j = i+1; j < to && Double.compare(values[j], x) == 0; ++j) {
+                        if (labels.get(j) == true)
+                            ++pLeft;
+                        else
+                            ++nLeft;
+
+                        lastChange = labels.get(j);
+                    }
+
+                    i = j - 1;
+                    int rb = j;
+                    int pRight = nPositive - pLeft;
+                    int nRight = nNegative - nLeft;
+
+                    double entropy = 0;
+                    // left side (<=)
+                    double p1 = (double)pLeft / (pLeft + nLeft);
+                    entropy += (double)(pLeft + nLeft) / sampleSize * Helpers.getBooleanEntropy(p1);
+                    // right side (>)
+                    double p2 = (double)pRight / (pRight + nRight);
+                    entropy += (double)(pRight + nRight) / sampleSize * Helpers.getBooleanEntropy(p2);
+
+                    double gain = goalEntropy - entropy;
+                    if (gain > maxGain) {
+                        maxGain = gain;
+                        splitThreshold = mean;
+                        bestLb = lb;
+                        bestRb = rb;
+                        pLeftBest = pLeft;
+                        nLeftBest = nLeft;
+                    }
                 }
-                
-                i = j - 1;
-                int rb = j;
-                int pRight = nPositive - pLeft;
-                int nRight = nNegative - nLeft;
-                
+            }
+
+            if (Double.isNaN(splitThreshold))
+                return;
+
+            // recurse, keeping everything in sorted order; the right side must be
+            // > and there might be a whole subsequence of duplicate values
+            bin(from, bestLb, pLeftBest, nLeftBest);
+            if (nSplits == splits.length)
+                splits = Arrays.copyOf(splits, 2 * nSplits);
+            splits[nSplits++] = splitThreshold;
+            bin(bestRb, to, nPositive - pLeftBest, nNegative - nLeftBest);
+            ++splitCount;
+        }
+    }
+
+    /**
+     * Supervised binning of a single numerical attribute from a summary of its
+     * values: the distinct values in ascending order, each with the (estimated)
+     * number of positive and negative examples taking it on. Every boundary
+     * between two consecutive values is a candidate split point.
+     */
+    private static class SketchBinner {
+        private final double[] values;
+        private final long[] positives, negatives;
+        private double[] splits = new double[MAX_SPLITS + 2];
+        private int nSplits;
+        private int splitCount;
+
+        SketchBinner(double[] values, long[] positives, long[] negatives) {
+            this.values = values;
+            this.positives = positives;
+            this.negatives = negatives;
+        }
+
+        /**
+         * Splits the range of values recursively, maximizing information gain,
+         * in the same manner as {@link Binner#bin(int, int, int, int)}.
+         * @param from Index of the first value of the range to split
+         * @param to Index past the last value of the range
+         * @param nPositive Weight of the positive examples in the range
+         * @param nNegative Weight of the negative examples in the range
+         */
+        void bin(int from, int to, long nPositive, long nNegative) {
+            if (splitCount > MAX_SPLITS)
+                return;
+            if (to - from <= 1 || nNegative + nPositive == 0)
+                return;
+
+            double goalEntropy = Helpers.getBooleanEntropy((double)nPositive / (nPositive + nNegative));
+            double sampleSize = nPositive + nNegative;
+            double maxGain = Double.MIN_VALUE;
+            int best = -1; // index of the first value right of the split
+            long pLeft = 0;
+            long nLeft = 0;
+            long pLeftBest = 0;
+            long nLeftBest = 0;
+
+            for (int i = from; i < to - 1; ++i) {
+                pLeft += positives[i];
+                nLeft += negatives[i];
+                long pRight = nPositive - pLeft;
+                long nRight = nNegative - nLeft;
+
                 double entropy = 0;
                 // left side (<=)
                 double p1 = (double)pLeft / (pLeft + nLeft);
-                entropy += (double)(pLeft + nLeft) / sampleSize * Helpers.getBooleanEntropy(p1);
+                entropy += (pLeft + nLeft) / sampleSize * Helpers.getBooleanEntropy(p1);
                 // right side (>)
                 double p2 = (double)pRight / (pRight + nRight);
-                entropy += (double)(pRight + nRight) / sampleSize * Helpers.getBooleanEntropy(p2);
-                
+                entropy += (pRight + nRight) / sampleSize * Helpers.getBooleanEntropy(p2);
+
                 double gain = goalEntropy - entropy;
                 if (gain > maxGain) {
                     maxGain = gain;
-                    splitThreshold = mean;
-                    bestLb = lb;
-                    bestRb = rb;
+                    best = i + 1;
                     pLeftBest = pLeft;
                     nLeftBest = nLeft;
                 }
             }
+
+            if (best == -1)
+                return;
+
+            bin(from, best, pLeftBest, nLeftBest);
+            if (nSplits == splits.length)
+                splits = Arrays.copyOf(splits, 2 * nSplits);
+            splits[nSplits++] = (values[best - 1] + values[best]) * 0.5;
+            bin(best, to, nPositive - pLeftBest, nNegative - nLeftBest);
+            ++splitCount;
         }
-        
-        if (Double.isNaN(splitThreshold))
-            return List.of();
-        
-        // recurse
-        int toTheLeft = bestLb;
-        int toTheRight = bestRb;
-        System.out.println("lb="+bestLb +", rb=" + bestRb);
-        // find the upper bound, because the right side must be > and there
-        // might be a whole subsequence of duplicate values
-        List<Double> leftValues;
-        List<Double> rightValues;
-        try {
-            leftValues = bin(pLeftBest, nLeftBest, values.subList(0, toTheLeft));
-        } catch (IllegalArgumentException e) {
-            leftValues = List.of();
-        }
-        
-        try {
-            rightValues = bin(nPositive - pLeftBest, nNegative - nLeftBest,
-                    values.subList(toTheRight, values.size()));
-        } catch (IllegalArgumentException e) {
-            rightValues = List.of();
-        }
-              
-        // merge, keeping everything in sorted order
-        splitList.addAll(leftValues);
-        splitList.add(splitThreshold);
-        splitList.addAll(rightValues);
-        ++attributeSplitCount;
-        
-        return splitList;
     }
 }
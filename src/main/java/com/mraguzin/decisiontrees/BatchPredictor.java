@@ -0,0 +1,196 @@
+package com.mraguzin.decisiontrees;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * Scores whole batches of examples with a trained model, spreading the work
+ * across cores. Csv input is streamed through in chunks: a chunk of records
+ * is read, scored in parallel and written out (in input order) before the
+ * next one is read, so memory use does not depend on the size of the input.
+ * @author mraguzin
+ */
+public class BatchPredictor {
+    private final TreeModel tree;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private static final int SLICE_SIZE = 1024; // rows scored by a single task
+
+    public BatchPredictor(TreeModel tree) {
+        this(tree, ForkJoinPool.commonPool(), 65536);
+    }
+
+    /**
+     * @param tree
+     * @param pool Pool the scoring runs on
+     * @param chunkSize Number of csv records read (and held) at a time
+     */
+    public BatchPredictor(TreeModel tree, ForkJoinPool pool, int chunkSize) {
+        this.tree = tree;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Scores every example of a columnar batch. The batch's columns are matched
+     * to the tree's attributes by name and its dictionaries are translated to
+     * the tree's, so it can come from any file with the same attributes.
+     * @param batch
+     * @return The predictions, one per row.
+     */
+    public boolean[] predict(Dataset batch) {
+        int nAttributes = tree.attributeCount();
+        var numbers = new DoubleBuffer[nAttributes];
+        var codes = new IntBuffer[nAttributes];
+        var remap = new int[nAttributes][]; // batch code -> tree code
+
+        for (int i = 0; i < nAttributes; ++i) {
+            int column = batch.indexOf(tree.attribute(i));
+            if (column == -1) {
+                throw new IllegalArgumentException("The batch is missing attribute "
+                        + tree.attribute(i));
+            }
+            if (batch.isNumeric(column) != tree.isNumeric(i)) {
+                throw new IllegalArgumentException("Attribute " + tree.attribute(i)
+                        + " has a different type than in training");
+            }
+
+            if (tree.isNumeric(i)) {
+                numbers[i] = batch.numbers(column);
+            } else {
+                codes[i] = batch.codes(column);
+                var dictionary = batch.dictionary(column);
+                remap[i] = new int[dictionary.size()];
+                for (int code = 0; code < remap[i].length; ++code)
+                    remap[i][code] = tree.code(i, dictionary.get(code));
+            }
+        }
+
+        var predictions = new boolean[batch.size()];
+        forEachSlice(batch.size(), (from, to) -> {
+            var features = new double[nAttributes];
+            for (int row = from; row < to; ++row) {
+                for (int i = 0; i < nAttributes; ++i) {
+                    features[i] = numbers[i] != null ? numbers[i].get(row)
+                            : remap[i][codes[i].get(row)];
+                }
+
+                predictions[row] = tree.predict(features);
+            }
+        });
+
+        return predictions;
+    }
+
+    /**
+     * Scores a csv file with a header, writing every input record followed by
+     * its prediction (+ or -) into the output file. Columns which are not
+     * attributes of the tree (such as a known classification) are copied
+     * through unchanged. Categorical values never seen in training are
+     * encoded as -1, see {@link TreeModel#encode(String[], double[])}.
+     * @param input
+     * @param output
+     * @return Number of scored records.
+     * @throws IOException
+     * @throws IllegalArgumentException If the input is missing an attribute of
+     * the tree or has a malformed number.
+     */
+    public long predict(Path input, Path output) throws IOException {
+        return predict(input, output, StandardCharsets.UTF_8);
+    }
+
+    public long predict(Path input, Path output, Charset charset) throws IOException {
+        try (var reader = Files.newBufferedReader(input, charset);
+                var writer = Files.newBufferedWriter(output, charset)) {
+            return predict(reader, writer);
+        }
+    }
+
+    /**
+     * Scores csv text, see {@link #predict(Path, Path)}.
+     * @param input
+     * @param output
+     * @return Number of scored records.
+     * @throws IOException
+     */
+    public long predict(Reader input, Writer output) throws IOException {
+        var parser = CsvLoader.WITH_HEADER.parse(input);
+        var header = parser.getHeaderNames();
+        int nAttributes = tree.attributeCount();
+        var columns = new int[nAttributes];
+        for (int i = 0; i < nAttributes; ++i) {
+            columns[i] = header.indexOf(tree.attribute(i));
+            if (columns[i] == -1) {
+                throw new IllegalArgumentException("The input is missing attribute "
+                        + tree.attribute(i));
+            }
+        }
+
+        var outputHeader = new ArrayList<String>(header);
+        outputHeader.add("prediction");
+        var printer = CSVFormat.DEFAULT.print(output);
+        printer.printRecord(outputHeader);
+
+        long total = 0;
+        var chunk = new ArrayList<CSVRecord>(chunkSize);
+        var predictions = new boolean[chunkSize];
+        var iterator = parser.iterator();
+        while (iterator.hasNext()) {
+            chunk.clear();
+            while (chunk.size() < chunkSize && iterator.hasNext())
+                chunk.add(iterator.next());
+
+            score(chunk, columns, predictions);
+            for (int i = 0; i < chunk.size(); ++i) {
+                for (var value : chunk.get(i))
+                    printer.print(value);
+                printer.print(predictions[i] ? "+" : "-");
+                printer.println();
+            }
+
+            total += chunk.size();
+        }
+
+        printer.flush();
+        return total;
+    }
+
+    private void score(List<CSVRecord> chunk, int[] columns, boolean[] predictions) {
+        forEachSlice(chunk.size(), (from, to) -> {
+            var values = new String[columns.length];
+            var features = new double[columns.length];
+            for (int row = from; row < to; ++row) {
+                var record = chunk.get(row);
+                for (int i = 0; i < columns.length; ++i)
+                    values[i] = record.get(columns[i]);
+
+                tree.encode(values, features);
+                predictions[row] = tree.predict(features);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface SliceTask { void run(int from, int to); }
+
+    private void forEachSlice(int size, SliceTask task) {
+        int slices = (size + SLICE_SIZE - 1) / SLICE_SIZE;
+        pool.submit(() -> IntStream.range(0, slices).parallel().forEach(slice -> {
+            int from = slice * SLICE_SIZE;
+            task.run(from, Math.min(size, from + SLICE_SIZE));
+        })).join();
+    }
+}
@@ -0,0 +1,292 @@
+package com.mraguzin.decisiontrees;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ *
+ * This class represents a decision tree built in a breadth-first (level-wise)
+ * manner. All the frontier nodes of a single depth are grown together: one
+ * sequential pass over the examples accumulates the class histograms of every
+ * (node, attribute, value) triple at once, after which each node picks its
+ * split from its own histograms. The examples are thus read once per level, in
+ * storage order, instead of once per node. Given the same seed, the resulting
+ * tree is the same as the one {@link DepthFirstTree} builds.
+ * <p>
+ * A node only keeps histograms of the attributes it may still split on, each
+ * sized by that attribute's own number of values. Should a wide level need
+ * more of them than {@link BuildOptions#setHistogramBudget(long)} allows, its
+ * nodes are grown in several passes, each over as many of them as fit.
+ *
+ * @author mraguzin
+ */
+public class BreadthFirstTree extends DecisionTree {
+
+    private int[] branchCounts; // histogram of the chosen attribute, kept for
+    // pruning
+    private BuildMetrics metrics; // null means no bookkeeping
+    private int depth; // the root is at depth 0
+
+    private BreadthFirstTree(Dataset data, AttributeSet attributeValues,
+            double pvalue, long seed) {
+        super(data, attributeValues, pvalue, seed);
+    }
+
+    /**
+     * Builds a decision tree from the given encoded examples.
+     *
+     * @param data
+     * @param pvalueCutoff Significance level used by {@link #prune()}
+     */
+    public BreadthFirstTree(Dataset data, double pvalueCutoff) {
+        this(data, pvalueCutoff, new BuildOptions());
+    }
+
+    /**
+     * Builds a decision tree from the given encoded examples, using the
+     * provided learner settings. Only the seed, the metrics and the histogram
+     * budget are relevant to this learner.
+     *
+     * @param data
+     * @param pvalueCutoff Significance level used by {@link #prune()}
+     * @param options
+     */
+    public BreadthFirstTree(Dataset data, double pvalueCutoff, BuildOptions options) {
+        super(data, new AttributeSet(data, options), pvalueCutoff,
+                options.getSeed());
+        metrics = options.getMetrics();
+        buildDecisionTree(options.getHistogramBudget());
+    }
+
+    @Override
+    protected int[] getBranchCounts() {
+        return branchCounts;
+    }
+
+    /**
+     * A node waiting to be grown, together with the attributes it may still
+     * split on and the layout of its class histograms: those of candidate k
+     * start at offsets[k] and take up two entries per value code.
+     */
+    private static class Frontier {
+        final BreadthFirstTree node;
+        final int[] attributes;
+        final int[] offsets;
+        final int histogramSize;
+
+        Frontier(BreadthFirstTree node, int[] attributes) {
+            this.node = node;
+            this.attributes = attributes;
+            offsets = new int[attributes.length];
+            int size = 0;
+            for (int k = 0; k < attributes.length; ++k) {
+                offsets[k] = size;
+                size += 2 * node.attributeValues.size(attributes[k]);
+            }
+            histogramSize = size;
+        }
+    }
+
+    private void buildDecisionTree(long histogramBudget) {
+        int nAttributes = data.attributeCount();
+        var attributes = Helpers.range(nAttributes);
+        if (settle(data.positives(), data.negatives(), 0, 0, attributes)) {
+            report(NodeBuildEvent.beginIfEnabled(), 0, data.size(), 0);
+            return;
+        }
+
+        long budget = Math.max(1, histogramBudget / Integer.BYTES); // in counts
+        var codes = new IntBuffer[nAttributes];
+        for (int a = 0; a < nAttributes; ++a)
+            codes[a] = attributeValues.codes(a);
+
+        var classes = data.classes();
+        var nodeOf = new int[data.size()]; // frontier slot of every row's node;
+        // -1 once the row has reached a leaf
+        var frontier = new ArrayList<Frontier>();
+        frontier.add(new Frontier(this, attributes));
+        int[] splits = null; // attribute every node of the previous level split on
+        int[][] childSlots = null; // value code -> frontier slot of the child
+
+        while (!frontier.isEmpty()) {
+            var nextFrontier = new ArrayList<Frontier>();
+            var levelSplits = new int[frontier.size()];
+            var levelChildSlots = new int[frontier.size()][];
+            boolean routed = splits == null;
+
+            // the nodes [first,last> whose histograms fit into the budget get
+            // grown by a single pass; the first pass also routes every row
+            for (int first = 0, last; first < frontier.size(); first = last) {
+                long size = 0;
+                for (last = first; last < frontier.size(); ++last) {
+                    size += frontier.get(last).histogramSize;
+                    if (size > budget && last > first)
+                        break;
+                }
+
+                var counts = new int[last - first][];
+                var totals = new int[2 * (last - first)];
+                for (int slot = first; slot < last; ++slot)
+                    counts[slot - first] = new int[frontier.get(slot).histogramSize];
+
+                for (int row = 0; row < nodeOf.length; ++row) {
+                    int slot = nodeOf[row];
+                    if (slot < 0)
+                        continue;
+
+                    if (!routed) { // route the row into its child first
+                        int split = splits[slot];
+                        slot = split < 0 ? -1 : childSlots[slot][codes[split].get(row)];
+                        nodeOf[row] = slot;
+                    }
+                    if (slot < first || slot >= last)
+                        continue;
+
+                    int c = classes.get(row) ? 0 : 1;
+                    ++totals[2 * (slot - first) + c];
+                    var node = frontier.get(slot);
+                    var histogram = counts[slot - first];
+                    var candidates = node.attributes;
+                    var offsets = node.offsets;
+                    for (int k = 0; k < candidates.length; ++k)
+                        ++histogram[offsets[k] + 2 * codes[candidates[k]].get(row) + c];
+                }
+                routed = true;
+
+                for (int slot = first; slot < last; ++slot) {
+                    var current = frontier.get(slot);
+                    levelChildSlots[slot] = current.node.split(current,
+                            totals[2 * (slot - first)], totals[2 * (slot - first) + 1],
+                            counts[slot - first], nextFrontier);
+                    levelSplits[slot] = current.node.attribute;
+                    counts[slot - first] = null;
+                }
+            }
+
+            splits = levelSplits;
+            childSlots = levelChildSlots;
+            frontier = nextFrontier;
+        }
+    }
+
+    /**
+     * Turns this frontier node into an inner node splitting on its most
+     * important attribute, or into a leaf if no attribute has any gain. Every
+     * child that cannot become a leaf right away is appended to the frontier.
+     *
+     * @return Frontier slot of the child for every value code (-1 for the
+     * children which are leaves), or null if this node became a leaf.
+     */
+    private int[] split(Frontier current, int p, int n, int[] counts,
+            ArrayList<Frontier> nextFrontier) {
+        var attributes = current.attributes;
+        var event = NodeBuildEvent.beginIfEnabled(); // null unless recorded
+        long start = metrics == null ? 0 : System.nanoTime();
+        int maxAttribute = -1;
+        int from = 0; // where its histogram starts
+        double maxImportance = Double.MIN_VALUE;
+        for (int k = 0; k < attributes.length; ++k) { // only a strictly greater
+            // gain wins, so ties go to the first candidate
+            double importance = getImportance(attributes[k], p, n, counts,
+                    current.offsets[k]);
+            if (importance > maxImportance) {
+                maxImportance = importance;
+                maxAttribute = attributes[k];
+                from = current.offsets[k];
+            }
+        }
+
+        if (maxAttribute == -1) { // no attribute separates these examples
+            rootAttribute = Helpers.majority(p, n, seed) ? "+" : "-";
+            report(event, start, p + n, attributes.length);
+            return null;
+        }
+
+        attribute = maxAttribute;
+        rootAttribute = data.attribute(maxAttribute);
+        int size = attributeValues.size(maxAttribute);
+        branchCounts = Arrays.copyOfRange(counts, from, from + 2 * size);
+
+        var subAttributes = new int[attributes.length - 1];
+        int k = 0;
+        for (int candidate : attributes) {
+            if (candidate != maxAttribute)
+                subAttributes[k++] = candidate;
+        }
+
+        children = new DecisionTree[size];
+        var childSlots = new int[size];
+        for (int value = 0; value < size; ++value) {
+            var child = new BreadthFirstTree(data, attributeValues,
+                    statisticalSignificance, Helpers.mix(seed, value));
+            child.metrics = metrics;
+            child.depth = depth + 1;
+            children[value] = child;
+
+            if (child.settle(branchCounts[2 * value], branchCounts[2 * value + 1],
+                    p, n, subAttributes)) {
+                child.report(NodeBuildEvent.beginIfEnabled(), 0, branchCounts[2 * value]
+                        + branchCounts[2 * value + 1], 0);
+                childSlots[value] = -1;
+            } else {
+                childSlots[value] = nextFrontier.size();
+                nextFrontier.add(new Frontier(child, subAttributes));
+            }
+        }
+
+        report(event, start, p + n, attributes.length);
+        return childSlots;
+    }
+
+    /**
+     * Reports the work of this node to the flight recorder and the metrics,
+     * whichever are enabled. The shared pass over the rows is not attributed
+     * to the nodes; only the choice of the split is.
+     *
+     * @param event The node's event; null if it is not recorded
+     * @param rows Number of examples of this node
+     * @param scored Number of attributes scored
+     */
+    private void report(NodeBuildEvent event, long start, int rows, int scored) {
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.depth = depth;
+                event.rows = rows;
+                event.attributesScored = scored;
+                event.rowsScanned = (long)rows * scored;
+                event.attribute = attribute == -1 ? null : rootAttribute;
+                event.commit();
+            }
+        }
+
+        if (metrics != null)
+            metrics.recordNode(depth, rows, scored, start == 0 ? 0
+                    : System.nanoTime() - start, attribute == -1);
+    }
+
+    /**
+     * Makes this node a leaf if its class counts alone already decide it: when it
+     * has no examples, when they all share the same classification or when
+     * there are no more attributes to split on.
+     *
+     * @return Whether this node became a leaf.
+     */
+    private boolean settle(int p, int n, int parentPositives, int parentNegatives,
+            int[] attributes) {
+        if (p + n == 0)
+            rootAttribute = Helpers.majority(parentPositives, parentNegatives, seed)
+                    ? "+" : "-";
+        else if (n == 0)
+            rootAttribute = "+";
+        else if (p == 0)
+            rootAttribute = "-";
+        else if (attributes.length == 0)
+            rootAttribute = Helpers.majority(p, n, seed) ? "+" : "-";
+        else
+            return false;
+
+        return true;
+    }
+}
@@ -0,0 +1,107 @@
+package com.mraguzin.decisiontrees;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timers of a tree build, for profiling. Pass an instance to
+ * {@link BuildOptions#collectMetrics(BuildMetrics)} and query it once the
+ * build is done; builds without one do not pay for any of the bookkeeping.
+ * The counters are safe to update from the parallel builders and may be
+ * shared by several builds, in which case they add up.
+ * <p>
+ * The same per-node figures are available as JFR events, see
+ * {@link NodeBuildEvent}.
+ * @author mraguzin
+ */
+public class BuildMetrics {
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder leaves = new LongAdder();
+    private final LongAdder rowsScanned = new LongAdder();
+    private final LongAdder attributesScored = new LongAdder();
+    private final LongAdder splitNanos = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final LongAdder discretisedAttributes = new LongAdder();
+    private final LongAdder discretisationNanos = new LongAdder();
+
+    void recordNode(int depth, int rows, int scored, long nanos, boolean leaf) {
+        nodes.increment();
+        if (leaf)
+            leaves.increment();
+        rowsScanned.add((long)rows * scored);
+        attributesScored.add(scored);
+        splitNanos.add(nanos);
+        maxDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    void recordDiscretisation(long nanos) {
+        discretisedAttributes.increment();
+        discretisationNanos.add(nanos);
+    }
+
+    /**
+     * Gets the number of nodes built, inner ones and leaves.
+     * @return Node count.
+     */
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    public long getLeaves() {
+        return leaves.sum();
+    }
+
+    /**
+     * Gets the number of row visits made while scoring attributes: every
+     * scored attribute scans all the rows of its node once.
+     * @return Rows scanned.
+     */
+    public long getRowsScanned() {
+        return rowsScanned.sum();
+    }
+
+    public long getAttributesScored() {
+        return attributesScored.sum();
+    }
+
+    /**
+     * Gets the total time the nodes spent on their own work: deciding whether
+     * to become a leaf, scoring the candidates and partitioning the rows. The
+     * time spent in the children is not included, so with parallel builds
+     * this can exceed the wall-clock time.
+     * @return Time in nanoseconds.
+     */
+    public long getSplitNanos() {
+        return splitNanos.sum();
+    }
+
+    /**
+     * Gets the depth of the deepest node; the root is at depth 0.
+     * @return Maximum depth.
+     */
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    public long getDiscretisedAttributes() {
+        return discretisedAttributes.sum();
+    }
+
+    /**
+     * Gets the total time spent binning numerical attributes. They are binned
+     * in parallel, so this can exceed the wall-clock time.
+     * @return Time in nanoseconds.
+     */
+    public long getDiscretisationNanos() {
+        return discretisationNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("nodes=%d leaves=%d maxDepth=%d attributesScored=%d "
+                + "rowsScanned=%d splitTime=%.3f ms discretised=%d discretisationTime=%.3f ms",
+                getNodes(), getLeaves(), getMaxDepth(), getAttributesScored(),
+                getRowsScanned(), getSplitNanos() / 1e6, getDiscretisedAttributes(),
+                getDiscretisationNanos() / 1e6);
+    }
+}
@@ -0,0 +1,260 @@
+package com.mraguzin.decisiontrees;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Optional settings of the decision tree learner. The defaults reproduce the
+ * plain sequential, depth-first build. All setters return this object, so that
+ * they can be chained.
+ * @author mraguzin
+ */
+public class BuildOptions {
+    private Executor scoringExecutor; // null means sequential scoring
+    private int scoringCutoff = 4096;
+    private ForkJoinPool buildPool; // null means sequential recursion
+    private int buildCutoff = 8192;
+    private long seed = new Random().nextLong();
+    private BuildMetrics metrics; // null means no bookkeeping
+    private int sampledAttributes; // 0 means scoring all the candidates
+    private double discretisationError; // 0 means exact binning
+    private long histogramBudget = 64L << 20; // bytes; only BreadthFirstTree
+    private double splitConfidence = 1e-7; // the rest only concern HoeffdingTree
+    private int gracePeriod = 200;
+    private double tieThreshold = 0.05;
+
+    public BuildOptions() {
+    }
+
+    /**
+     * Copies all the settings of another options object.
+     * @param other
+     */
+    public BuildOptions(BuildOptions other) {
+        scoringExecutor = other.scoringExecutor;
+        scoringCutoff = other.scoringCutoff;
+        buildPool = other.buildPool;
+        buildCutoff = other.buildCutoff;
+        seed = other.seed;
+        metrics = other.metrics;
+        sampledAttributes = other.sampledAttributes;
+        discretisationError = other.discretisationError;
+        histogramBudget = other.histogramBudget;
+        splitConfidence = other.splitConfidence;
+        gracePeriod = other.gracePeriod;
+        tieThreshold = other.tieThreshold;
+    }
+
+    /**
+     * Scores the candidate attributes of every sufficiently large node
+     * concurrently, on the common fork-join pool.
+     * @return This object.
+     */
+    public BuildOptions scoreInParallel() {
+        return scoreInParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Scores the candidate attributes of every sufficiently large node
+     * concurrently, on the given executor. The chosen attributes are the same
+     * as in the sequential mode: ties are always broken in favour of the
+     * attribute which comes first in column order.
+     * @param executor
+     * @return This object.
+     */
+    public BuildOptions scoreInParallel(Executor executor) {
+        scoringExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the smallest number of examples a node has to have in order to get
+     * its attributes scored in parallel; smaller nodes are not worth the
+     * scheduling overhead.
+     * @param rows
+     * @return This object.
+     */
+    public BuildOptions setScoringCutoff(int rows) {
+        scoringCutoff = rows;
+        return this;
+    }
+
+    /**
+     * Builds sibling subtrees concurrently as fork-join tasks, on the common
+     * fork-join pool.
+     * @return This object.
+     */
+    public BuildOptions buildInParallel() {
+        return buildInParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds sibling subtrees concurrently as fork-join tasks, on the given
+     * pool. Only nodes with at least as many examples as the build cutoff
+     * fork their children; smaller subtrees are built by plain recursion.
+     * @param pool
+     * @return This object.
+     */
+    public BuildOptions buildInParallel(ForkJoinPool pool) {
+        buildPool = pool;
+        return this;
+    }
+
+    /**
+     * Sets the smallest number of examples a node has to have in order to get
+     * its subtrees built as separate fork-join tasks.
+     * @param rows
+     * @return This object.
+     */
+    public BuildOptions setBuildCutoff(int rows) {
+        buildCutoff = rows;
+        return this;
+    }
+
+    /**
+     * Sets the seed of all the random choices made while learning. Two builds
+     * with the same seed and data produce the same tree, regardless of how
+     * they were parallelised.
+     * @param seed
+     * @return This object.
+     */
+    public BuildOptions setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Collects the counters and timers of the build into the given object.
+     * @param metrics
+     * @return This object.
+     */
+    public BuildOptions collectMetrics(BuildMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Makes every node score only a random subset of its candidate
+     * attributes, of the given size, as in random forests. The subset is drawn
+     * from the node's seed, so builds stay reproducible. Should none of the
+     * subset have any gain, the node scores the rest of its candidates before
+     * giving up and becoming a leaf. Only the depth-first learner samples
+     * attributes.
+     * @param attributes Subset size; 0 scores all the candidates
+     * @return This object.
+     */
+    public BuildOptions sampleAttributes(int attributes) {
+        sampledAttributes = attributes;
+        return this;
+    }
+
+    /**
+     * Bins the numerical attributes approximately, from quantile sketches of
+     * their values, instead of sorting every column. The split points are
+     * chosen among candidates whose ranks within each class are off by at
+     * most the given fraction of that class's examples.
+     * @param epsilon Rank error bound, e.g. 0.01; 0 bins exactly
+     * @return This object.
+     */
+    public BuildOptions approximateDiscretisation(double epsilon) {
+        discretisationError = epsilon;
+        return this;
+    }
+
+    /**
+     * Sets how much memory the class histograms of the breadth-first learner
+     * may take up at once. A level whose frontier needs more is grown in
+     * several passes over the rows, each covering as many of its nodes as fit.
+     * @param bytes
+     * @return This object.
+     */
+    public BuildOptions setHistogramBudget(long bytes) {
+        histogramBudget = bytes;
+        return this;
+    }
+
+    /**
+     * Sets the probability with which an online learner may pick a different
+     * split attribute than a batch learner would, given all the data (the δ
+     * of the Hoeffding bound). Smaller values make it wait for more examples
+     * before splitting.
+     * @param delta
+     * @return This object.
+     */
+    public BuildOptions setSplitConfidence(double delta) {
+        splitConfidence = delta;
+        return this;
+    }
+
+    /**
+     * Sets the number of examples an online leaf collects between two
+     * attempts to split it; the attempts are comparatively expensive.
+     * @param examples
+     * @return This object.
+     */
+    public BuildOptions setGracePeriod(int examples) {
+        gracePeriod = examples;
+        return this;
+    }
+
+    /**
+     * Sets the Hoeffding bound below which an online leaf splits on its best
+     * attribute even if the runner-up is just as good, since it then no longer
+     * matters which of them is chosen.
+     * @param threshold
+     * @return This object.
+     */
+    public BuildOptions setTieThreshold(double threshold) {
+        tieThreshold = threshold;
+        return this;
+    }
+
+    public Executor getScoringExecutor() {
+        return scoringExecutor;
+    }
+
+    public int getScoringCutoff() {
+        return scoringCutoff;
+    }
+
+    public ForkJoinPool getBuildPool() {
+        return buildPool;
+    }
+
+    public int getBuildCutoff() {
+        return buildCutoff;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public BuildMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getSampledAttributes() {
+        return sampledAttributes;
+    }
+
+    public double getDiscretisationError() {
+        return discretisationError;
+    }
+
+    public long getHistogramBudget() {
+        return histogramBudget;
+    }
+
+    public double getSplitConfidence() {
+        return splitConfidence;
+    }
+
+    public int getGracePeriod() {
+        return gracePeriod;
+    }
+
+    public double getTieThreshold() {
+        return tieThreshold;
+    }
+}
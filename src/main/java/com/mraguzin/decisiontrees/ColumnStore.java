@@ -0,0 +1,357 @@
+package com.mraguzin.decisiontrees;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Binary, columnar cache of an encoded {@link Dataset}, so that a csv which is
+ * trained on over and over again only has to be parsed once. The file holds
+ * the schema, the dictionaries, every column as raw primitives and the
+ * decoded classifications. Loading maps it into memory and the dataset reads
+ * its columns straight from the mapping, with no parsing, type detection or
+ * copying at all, so the pages of a column come from the page cache, which
+ * every process loading the same file shares. Only the dictionaries and the
+ * classifications are read onto the heap, as is any column too large for a
+ * single mapping (2 GB).
+ * <p>
+ * The file is little-endian, the byte order of the usual hosts, so the
+ * columns are read without any swapping. It is laid out as follows (a
+ * string is an int byte count followed by that many bytes of UTF-8):
+ * <pre>
+ * int      magic ("DTCS")
+ * int      format version
+ * long     offset of the columns, a multiple of 8
+ * int      row count n
+ * int      attribute count
+ * string   class attribute
+ *          per attribute: string name, int dictionary size (-1 for
+ *          numerical attributes), then the dictionary's values in code order
+ *          zero padding up to the columns
+ *          per attribute, in column order: double[n] for numerical ones,
+ *          int[n] for categorical ones, zero-padded to a multiple of 8 bytes
+ * long[]   the classification bitset, as {@link BitSet#toLongArray()}
+ * </pre>
+ * @author mraguzin
+ */
+public class ColumnStore {
+    static final int MAGIC = 0x44544353; // "DTCS"
+    static final int VERSION = 1;
+    private static final int PREAMBLE = 16; // magic, version and the offset
+    private static final int SEGMENT = 1 << 30; // largest part of a column
+    // mapped at a time
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private ColumnStore() {
+    }
+
+    /**
+     * Writes a dataset into a column store file.
+     * @param data
+     * @param file
+     * @throws IOException
+     */
+    public static void write(Dataset data, Path file) throws IOException {
+        int n = data.size();
+        int nAttributes = data.attributeCount();
+        var header = new ArrayList<byte[]>(); // strings, encoded up front to
+        // know the header's length
+        header.add(utf8(data.classAttribute()));
+        long headerLength = Integer.BYTES * 2L + Integer.BYTES + header.get(0).length;
+        for (int i = 0; i < nAttributes; ++i) {
+            var name = utf8(data.attribute(i));
+            header.add(name);
+            headerLength += Integer.BYTES + name.length + Integer.BYTES;
+            for (var value : data.dictionary(i)) {
+                var bytes = utf8(value);
+                header.add(bytes);
+                headerLength += Integer.BYTES + bytes.length;
+            }
+        }
+        long dataOffset = (PREAMBLE + headerLength + Long.BYTES - 1) & -Long.BYTES;
+
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            var out = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC).putInt(VERSION).putLong(dataOffset);
+            out.putInt(n).putInt(nAttributes);
+            int string = 0;
+            putString(channel, out, header.get(string++));
+            for (int i = 0; i < nAttributes; ++i) {
+                putString(channel, out, header.get(string++));
+                int size = data.isNumeric(i) ? -1 : data.dictionary(i).size();
+                ensure(channel, out, Integer.BYTES);
+                out.putInt(size);
+                for (int code = 0; code < size; ++code)
+                    putString(channel, out, header.get(string++));
+            }
+            pad(channel, out, dataOffset - PREAMBLE - headerLength);
+
+            for (int i = 0; i < nAttributes; ++i) {
+                if (data.isNumeric(i)) {
+                    var column = data.numbers(i);
+                    for (int row = 0; row < n; ++row) {
+                        ensure(channel, out, Double.BYTES);
+                        out.putDouble(column.get(row));
+                    }
+                } else {
+                    var column = data.codes(i);
+                    for (int row = 0; row < n; ++row) {
+                        ensure(channel, out, Integer.BYTES);
+                        out.putInt(column.get(row));
+                    }
+                    if (n % 2 != 0)
+                        pad(channel, out, Integer.BYTES);
+                }
+            }
+
+            for (long word : classWords(data)) {
+                ensure(channel, out, Long.BYTES);
+                out.putLong(word);
+            }
+            flush(channel, out);
+        }
+    }
+
+    /**
+     * Converts a csv file into a column store file, see
+     * {@link ParallelCsvLoader#load(Path, ClassDetector)}. The classifications are
+     * decided once, during the conversion.
+     * @param csv
+     * @param classifier Decides whether a classification value is + or -
+     * @param file
+     * @return The dataset, as it was written.
+     * @throws IOException
+     */
+    public static Dataset convert(Path csv, ClassDetector classifier, Path file)
+            throws IOException {
+        var data = ParallelCsvLoader.load(csv, classifier);
+        write(data, file);
+        return data;
+    }
+
+    /**
+     * Checks whether a file starts like a column store.
+     * @param file
+     * @return Whether it does.
+     * @throws IOException
+     */
+    public static boolean isColumnStore(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Loads a column store file. The dataset's columns stay mapped for as long
+     * as it is reachable.
+     * @param file
+     * @return The dataset.
+     * @throws IOException If the file cannot be read or is not a column
+     * store of a supported version.
+     */
+    public static Dataset read(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < PREAMBLE)
+                throw new IOException(file + " is not a column store");
+            var preamble = map(channel, 0, PREAMBLE);
+            if (preamble.getInt() != MAGIC)
+                throw new IOException(file + " is not a column store");
+            int version = preamble.getInt();
+            if (version != VERSION)
+                throw new IOException(file + " has unsupported column store version " + version);
+            long dataOffset = preamble.getLong();
+            if (dataOffset < PREAMBLE || dataOffset > Math.min(channel.size(), Integer.MAX_VALUE))
+                throw new IOException(file + " is truncated or corrupt");
+
+            try {
+                var header = map(channel, PREAMBLE, dataOffset - PREAMBLE);
+                int n = header.getInt();
+                // an attribute takes at least its name's length and its size
+                int nAttributes = checkCount(header, header.getInt(), 2 * Integer.BYTES,
+                        file);
+                String classAttribute = readString(header, file);
+                var attributes = new String[nAttributes];
+                var numeric = new boolean[nAttributes];
+                var dictionaries = new ArrayList<List<String>>(nAttributes);
+                long expected = dataOffset;
+                for (int i = 0; i < nAttributes; ++i) {
+                    attributes[i] = readString(header, file);
+                    int size = header.getInt();
+                    numeric[i] = size == -1;
+                    if (!numeric[i])
+                        checkCount(header, size, Integer.BYTES, file);
+                    var dictionary = new ArrayList<String>(Math.max(size, 0));
+                    for (int code = 0; code < size; ++code)
+                        dictionary.add(readString(header, file));
+                    dictionaries.add(dictionary);
+                    expected += numeric[i] ? (long)n * Double.BYTES
+                            : ((long)n * Integer.BYTES + Long.BYTES - 1) & -Long.BYTES;
+                }
+                int nWords = (n + Long.SIZE - 1) / Long.SIZE;
+                if (n < 0 || channel.size() < expected + (long)nWords * Long.BYTES)
+                    throw new IOException(file + " is truncated or corrupt");
+
+                var codes = new IntBuffer[nAttributes];
+                var numbers = new DoubleBuffer[nAttributes];
+                long position = dataOffset;
+                for (int i = 0; i < nAttributes; ++i) {
+                    if (numeric[i]) {
+                        numbers[i] = doubleColumn(channel, position, n);
+                        position += (long)n * Double.BYTES;
+                    } else {
+                        codes[i] = intColumn(channel, position, n);
+                        int size = dictionaries.get(i).size();
+                        for (int row = 0; row < n; ++row) {
+                            int code = codes[i].get(row);
+                            if (code < 0 || code >= size)
+                                throw new IOException(file + " is truncated or corrupt");
+                        }
+                        position += ((long)n * Integer.BYTES + Long.BYTES - 1) & -Long.BYTES;
+                    }
+                }
+
+                var words = new long[nWords];
+                if (nWords > 0)
+                    map(channel, position, (long)nWords * Long.BYTES).asLongBuffer().get(words);
+
+                return new Dataset(attributes, classAttribute, numeric, codes, numbers,
+                        dictionaries, BitSet.valueOf(words), n);
+            } catch (BufferUnderflowException | IllegalArgumentException
+                    | IndexOutOfBoundsException ex) {
+                throw new IOException(file + " is truncated or corrupt", ex);
+            }
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size)
+            throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Maps a numerical column, or copies it onto the heap if it is too large
+     * for a single mapping.
+     */
+    private static DoubleBuffer doubleColumn(FileChannel channel, long position, int n)
+            throws IOException {
+        long bytes = (long)n * Double.BYTES;
+        if (bytes <= Integer.MAX_VALUE)
+            return map(channel, position, bytes).asDoubleBuffer();
+
+        var column = new double[n];
+        readColumn(channel, position, column);
+        return DoubleBuffer.wrap(column);
+    }
+
+    /**
+     * Maps a categorical column, see {@link #doubleColumn}.
+     */
+    private static IntBuffer intColumn(FileChannel channel, long position, int n)
+            throws IOException {
+        long bytes = (long)n * Integer.BYTES;
+        if (bytes <= Integer.MAX_VALUE)
+            return map(channel, position, bytes).asIntBuffer();
+
+        var column = new int[n];
+        readColumn(channel, position, column);
+        return IntBuffer.wrap(column);
+    }
+
+    private static void readColumn(FileChannel channel, long position, double[] column)
+            throws IOException {
+        int perSegment = SEGMENT / Double.BYTES;
+        for (int from = 0; from < column.length; from += perSegment) {
+            int count = Math.min(perSegment, column.length - from);
+            map(channel, position + (long)from * Double.BYTES, (long)count * Double.BYTES)
+                    .asDoubleBuffer().get(column, from, count);
+        }
+    }
+
+    private static void readColumn(FileChannel channel, long position, int[] column)
+            throws IOException {
+        int perSegment = SEGMENT / Integer.BYTES;
+        for (int from = 0; from < column.length; from += perSegment) {
+            int count = Math.min(perSegment, column.length - from);
+            map(channel, position + (long)from * Integer.BYTES, (long)count * Integer.BYTES)
+                    .asIntBuffer().get(column, from, count);
+        }
+    }
+
+    private static long[] classWords(Dataset data) {
+        var words = data.classes().toLongArray(); // trailing zero words are
+        // left out, but the readers expect all of them
+        return Arrays.copyOf(words, (data.size() + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buffer, Path file) throws IOException {
+        var bytes = new byte[checkCount(buffer, buffer.getInt(), 1, file)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks a count just read against what the rest of the header can hold,
+     * given the least number of bytes each item takes, before anything gets
+     * allocated for the items.
+     */
+    private static int checkCount(ByteBuffer buffer, int count, int itemBytes, Path file)
+            throws IOException {
+        if (count < 0 || count > buffer.remaining() / itemBytes)
+            throw new IOException(file + " is truncated or corrupt: bad count " + count
+                    + " at byte " + (PREAMBLE + buffer.position() - Integer.BYTES));
+        return count;
+    }
+
+    private static void putString(FileChannel channel, ByteBuffer out, byte[] bytes)
+            throws IOException {
+        ensure(channel, out, Integer.BYTES);
+        out.putInt(bytes.length);
+        for (int from = 0; from < bytes.length; ) {
+            ensure(channel, out, 1);
+            int count = Math.min(out.remaining(), bytes.length - from);
+            out.put(bytes, from, count);
+            from += count;
+        }
+    }
+
+    private static void pad(FileChannel channel, ByteBuffer out, long bytes)
+            throws IOException {
+        for (long i = 0; i < bytes; ++i) {
+            ensure(channel, out, 1);
+            out.put((byte)0);
+        }
+    }
+
+    private static void ensure(FileChannel channel, ByteBuffer out, int bytes)
+            throws IOException {
+        if (out.remaining() < bytes)
+            flush(channel, out);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+        out.clear();
+    }
+}
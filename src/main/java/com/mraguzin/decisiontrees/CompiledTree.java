@@ -0,0 +1,237 @@
+package com.mraguzin.decisiontrees;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A trained decision tree frozen into flat primitive arrays, for fast
+ * inference. The nodes are laid out in breadth-first order, so that all the
+ * children of a node occupy consecutive slots: the child for value code k of
+ * node i is simply node childOffset[i]+k. Numerical nodes carry their bin
+ * split points in a shared threshold table, which holds those of every
+ * attribute just once, and find the right branch by binary search; categorical
+ * nodes branch on the value code directly.
+ * <p>
+ * Examples are given as a double per attribute (in dataset column order):
+ * the raw value for numerical attributes and the dictionary code for
+ * categorical ones, see {@link #encode(String[], double[])}. Predicting from
+ * such an array does not allocate. A compiled tree can be saved in the binary
+ * model format and served from the file later on, see {@link MappedTree}.
+ * @author mraguzin
+ */
+public class CompiledTree extends TreeModel {
+    private final int[] feature; // attribute index of every node; -1 for leaves
+    private final int[] childOffset; // node index of the first child
+    private final int[] arity; // number of children
+    private final int[] thresholdOffset; // start of the node's split points in
+    // thresholds; -1 for categorical nodes
+    private final double[] thresholds; // split points of every numerical
+    // attribute some node splits on, once per attribute
+    private final boolean[] outcome; // leaf classification; for inner nodes the
+    // majority, used for values never seen in training
+
+    CompiledTree(DecisionTree tree) {
+        this(tree, Map.of());
+    }
+
+    /**
+     * Compiles a pruned view of a tree, without modifying it.
+     * @param tree
+     * @param collapsed Nodes to be compiled as leaves, as if they had been
+     * pruned, each with its classification
+     */
+    CompiledTree(DecisionTree tree, Map<DecisionTree, Boolean> collapsed) {
+        super(attributesOf(tree.data), dictionariesOf(tree.data, tree.attributeValues));
+        var data = tree.data;
+        var attributeValues = tree.attributeValues;
+
+        var nodes = new ArrayList<DecisionTree>(); // breadth-first order
+        var queue = new ArrayDeque<DecisionTree>();
+        queue.add(tree);
+        while (!queue.isEmpty()) {
+            var node = queue.remove();
+            nodes.add(node);
+            if (collapsed.containsKey(node))
+                continue;
+            for (int code = 0; code < node.arity(); ++code)
+                queue.add(node.getChild(code));
+        }
+
+        int n = nodes.size();
+        feature = new int[n];
+        childOffset = new int[n];
+        arity = new int[n];
+        thresholdOffset = new int[n];
+        outcome = new boolean[n];
+        var attributeOffset = new int[data.attributeCount()]; // start of the
+        // attribute's split points in thresholds; -1 until a node needs them
+        Arrays.fill(attributeOffset, -1);
+        var table = new double[16];
+        int nThresholds = 0;
+        int nextChild = 1;
+
+        for (int i = 0; i < n; ++i) {
+            var node = nodes.get(i);
+            thresholdOffset[i] = -1;
+            var leafOutcome = collapsed.get(node);
+            if (leafOutcome != null) {
+                feature[i] = -1;
+                outcome[i] = leafOutcome;
+                continue;
+            }
+
+            feature[i] = node.attribute;
+            if (node.attribute == -1) {
+                outcome[i] = node.rootAttribute.equals("+");
+                continue;
+            }
+
+            arity[i] = node.arity();
+            childOffset[i] = nextChild;
+            nextChild += arity[i];
+            outcome[i] = node.majority();
+            if (data.isNumeric(node.attribute)) {
+                if (attributeOffset[node.attribute] == -1) {
+                    var cuts = attributeValues.getCutPoints(node.attribute);
+                    if (nThresholds + cuts.length > table.length)
+                        table = Arrays.copyOf(table, Math.max(2 * table.length,
+                                nThresholds + cuts.length));
+                    System.arraycopy(cuts, 0, table, nThresholds, cuts.length);
+                    attributeOffset[node.attribute] = nThresholds;
+                    nThresholds += cuts.length;
+                }
+                thresholdOffset[i] = attributeOffset[node.attribute];
+            }
+        }
+
+        thresholds = Arrays.copyOf(table, nThresholds);
+    }
+
+    static String[] attributesOf(Dataset data) {
+        var attributes = new String[data.attributeCount()];
+        for (int i = 0; i < attributes.length; ++i)
+            attributes[i] = data.attribute(i);
+        return attributes;
+    }
+
+    /**
+     * Gets the value -> code dictionaries of the categorical attributes, null
+     * for the numerical ones.
+     */
+    static List<Map<String, Integer>> dictionariesOf(Dataset data,
+            AttributeSet attributeValues) {
+        var dictionaries = new ArrayList<Map<String, Integer>>();
+        for (int i = 0; i < data.attributeCount(); ++i) {
+            if (data.isNumeric(i)) {
+                dictionaries.add(null);
+            } else {
+                var dictionary = new HashMap<String, Integer>();
+                List<?> values = attributeValues.get(data.attribute(i));
+                for (int code = 0; code < values.size(); ++code)
+                    dictionary.put(values.get(code).toString(), code);
+                dictionaries.add(dictionary);
+            }
+        }
+
+        return dictionaries;
+    }
+
+    @Override
+    public boolean predict(double[] features) {
+        int node = 0;
+        while (feature[node] >= 0) {
+            double x = features[feature[node]];
+            int code;
+            if (thresholdOffset[node] >= 0) {
+                code = AttributeSet.findBin(thresholds, thresholdOffset[node],
+                        arity[node] - 1, x);
+            } else {
+                code = (int)x;
+                if (code < 0 || code >= arity[node])
+                    return outcome[node]; // unknown value
+            }
+
+            node = childOffset[node] + code;
+        }
+
+        return outcome[node];
+    }
+
+    @Override
+    public int size() {
+        return feature.length;
+    }
+
+    /**
+     * Generates code for this tree, see {@link GeneratedTree}. This takes a
+     * run of the Java compiler, so it pays off for models which go on to
+     * predict many examples.
+     * @return A model making the same predictions.
+     * @throws IllegalStateException If there is no Java compiler at run time.
+     */
+    public GeneratedTree generate() {
+        return new GeneratedTree(attributes, dictionaries, feature, childOffset, arity,
+                thresholdOffset, thresholds, outcome);
+    }
+
+    /**
+     * Saves this tree in the binary model format, see {@link MappedTree} for
+     * the layout.
+     * @param file
+     * @throws IOException
+     */
+    public void save(Path file) throws IOException {
+        try (var out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file)))) {
+            out.writeInt(MappedTree.MAGIC);
+            out.writeInt(MappedTree.VERSION);
+            out.writeInt(attributes.length);
+            for (int i = 0; i < attributes.length; ++i) {
+                writeString(out, attributes[i]);
+                var dictionary = dictionaries.get(i);
+                if (dictionary == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+
+                var values = new String[dictionary.size()]; // in code order
+                for (var entry : dictionary.entrySet())
+                    values[entry.getValue()] = entry.getKey();
+                out.writeInt(values.length);
+                for (var value : values)
+                    writeString(out, value);
+            }
+
+            int n = feature.length;
+            out.writeInt(n);
+            out.writeInt(thresholds.length);
+            while (out.size() % Double.BYTES != 0)
+                out.writeByte(0); // align the node tables
+
+            for (double threshold : thresholds)
+                out.writeDouble(threshold);
+            for (int[] table : new int[][] {feature, childOffset, arity, thresholdOffset}) {
+                for (int i = 0; i < n; ++i)
+                    out.writeInt(table[i]);
+            }
+            for (int i = 0; i < n; ++i)
+                out.writeByte(outcome[i] ? 1 : 0);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        var bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
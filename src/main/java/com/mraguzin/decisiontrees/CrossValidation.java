@@ -0,0 +1,303 @@
+package com.mraguzin.decisiontrees;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Estimates how well depth-first trees generalise, by k-fold cross-validation
+ * and by learning curves over growing training sizes. The rows are shuffled
+ * once and every fold is just a range of that shuffled order, so the examples
+ * are never copied and the dataset is parsed only once for all the folds.
+ * <p>
+ * The folds are trained and scored concurrently, one task per fold, on the
+ * build pool of the options (or the common pool); a single fold's tree is
+ * grown sequentially. Every fold fits its own numerical bins on its training
+ * rows only, so the held-out rows do not leak into the model. Given the same
+ * seed the folds, and hence the results, are always the same.
+ * <p>
+ * A sweep over significance levels builds every fold's tree once and prunes
+ * it at all the levels with a {@link PruningSweep}.
+ * @author mraguzin
+ */
+public class CrossValidation {
+    private final Dataset data;
+    private final double pvalueCutoff;
+    private final BuildOptions options;
+
+    /**
+     * @param data
+     * @param pvalueCutoff Significance level for pruning the trees; 0 leaves
+     * them unpruned
+     * @param options Seed, build pool, metrics and the number of sampled
+     * attributes; the other parallel settings are ignored
+     */
+    public CrossValidation(Dataset data, double pvalueCutoff, BuildOptions options) {
+        this.data = data;
+        this.pvalueCutoff = pvalueCutoff;
+        this.options = new BuildOptions(options).scoreInParallel(null)
+                .buildInParallel(null); // fold-level parallelism only
+    }
+
+    /**
+     * Runs k-fold cross-validation: every fold is held out once, while a tree
+     * is trained on the other k-1.
+     * @param k Number of folds, at least 2
+     * @return The results of the folds, in fold order.
+     */
+    public List<Fold> kFold(int k) {
+        return learningCurve(k, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Runs k-fold cross-validation for each of the given pruning significance
+     * levels, training just one tree per fold. The significance level given
+     * to the constructor is not used.
+     * @param k Number of folds, at least 2
+     * @param significances Significance levels; 0 leaves the trees unpruned
+     * @return The results, grouped by level (in the given order), then by fold.
+     */
+    public List<Fold> sweep(int k, double... significances) {
+        return run(k, new int[] {Integer.MAX_VALUE}, significances);
+    }
+
+    /**
+     * Computes a learning curve: for every fold and every training size, a
+     * tree is trained on that many rows of the fold's training part (or all
+     * of them, if there are fewer) and scored on the held-out fold. The
+     * smaller training sets are prefixes of the larger ones.
+     * @param k Number of folds, at least 2
+     * @param sizes Training sizes
+     * @return The results, grouped by size (in the given order), then by fold.
+     */
+    public List<Fold> learningCurve(int k, int... sizes) {
+        return run(k, sizes, new double[] {pvalueCutoff});
+    }
+
+    private List<Fold> run(int k, int[] sizes, double[] significances) {
+        int n = data.size();
+        if (k < 2 || k > n)
+            throw new IllegalArgumentException("The number of folds has to be "
+                    + "between 2 and the number of rows");
+
+        var order = shuffledRows();
+        var pool = options.getBuildPool() != null ? options.getBuildPool()
+                : ForkJoinPool.commonPool();
+        var results = pool.submit(() -> IntStream.range(0, sizes.length * k).parallel()
+                .mapToObj(task -> evaluate(order, task % k, k, sizes[task / k],
+                        significances))
+                .collect(Collectors.toList())).join();
+
+        var folds = new Fold[sizes.length * significances.length * k];
+        for (int task = 0; task < results.size(); ++task) { // regroup by
+            // size, then level, then fold
+            int size = task / k;
+            int fold = task % k;
+            for (int level = 0; level < significances.length; ++level)
+                folds[(size * significances.length + level) * k + fold] =
+                        results.get(task)[level];
+        }
+
+        return Arrays.asList(folds);
+    }
+
+    /**
+     * Shuffles the rows once for all the folds, as given by the seed.
+     * @return Every row index, in shuffled order.
+     */
+    int[] shuffledRows() {
+        var order = Helpers.range(data.size());
+        var random = new SplittableRandom(Helpers.mix(options.getSeed(), -1));
+        for (int i = order.length - 1; i > 0; --i) { // Fisher-Yates shuffle
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+
+        return order;
+    }
+
+    /**
+     * Gets where a fold starts within the shuffled order; it ends where the
+     * next one starts.
+     * @param fold
+     * @param n Number of rows
+     * @param k Number of folds
+     * @return Index into the shuffled order.
+     */
+    static int foldStart(int fold, int n, int k) {
+        return (int)((long)fold * n / k);
+    }
+
+    /**
+     * Gets the training rows of a fold: the first size rows outside of it, in
+     * shuffled order, so the smaller training sets are prefixes of the
+     * larger ones.
+     * @param order Shuffled rows
+     * @param fold
+     * @param k Number of folds
+     * @param size Training size; clamped to the number of rows outside the fold
+     * @return Row indices.
+     */
+    static int[] trainingRows(int[] order, int fold, int k, int size) {
+        int n = order.length;
+        int testFrom = foldStart(fold, n, k);
+        int testTo = foldStart(fold + 1, n, k);
+        var training = new int[Math.min(size, n - (testTo - testFrom))];
+        int before = Math.min(training.length, testFrom); // the training part
+        // is what precedes the fold, then what follows it
+        System.arraycopy(order, 0, training, 0, before);
+        System.arraycopy(order, testTo, training, before, training.length - before);
+        return training;
+    }
+
+    /**
+     * Trains a tree on the training part of a fold and scores it, pruned at
+     * each of the given levels, on the fold.
+     */
+    private Fold[] evaluate(int[] order, int fold, int k, int size,
+            double[] significances) {
+        int testFrom = foldStart(fold, order.length, k);
+        int testTo = foldStart(fold + 1, order.length, k);
+        var training = trainingRows(order, fold, k, size);
+
+        long start = System.nanoTime();
+        var attributeValues = new AttributeSet(data, training, options);
+        var tree = new DepthFirstTree(data, attributeValues, training, pvalueCutoff,
+                options);
+        var sweep = new PruningSweep(tree);
+        long built = System.nanoTime();
+
+        int nAttributes = data.attributeCount();
+        var features = new double[nAttributes];
+        var results = new Fold[significances.length];
+        for (int level = 0; level < significances.length; ++level) {
+            long pruneStart = System.nanoTime();
+            var compiled = sweep.compile(significances[level]);
+            long trained = System.nanoTime();
+
+            int correct = 0;
+            for (int i = testFrom; i < testTo; ++i) {
+                int row = order[i];
+                for (int a = 0; a < nAttributes; ++a)
+                    features[a] = data.isNumeric(a) ? data.numbers(a).get(row)
+                            : data.codes(a).get(row);
+                if (compiled.predict(features) == data.isPositive(row))
+                    ++correct;
+            }
+            long scored = System.nanoTime();
+
+            results[level] = new Fold(fold, significances[level], training.length,
+                    testTo - testFrom, correct, built - start + trained - pruneStart,
+                    scored - trained, compiled.size());
+        }
+
+        return results;
+    }
+
+    /**
+     * Pools the folds' predictions into a single accuracy.
+     * @param folds
+     * @return Correct predictions over all the held-out rows.
+     */
+    public static double accuracy(List<Fold> folds) {
+        long correct = 0;
+        long total = 0;
+        for (var fold : folds) {
+            correct += fold.correct;
+            total += fold.testRows;
+        }
+
+        return (double)correct / total;
+    }
+
+    /**
+     * The outcome of training on one training set and scoring one held-out
+     * fold. The timings are wall-clock ones, taken while the other folds were
+     * running too.
+     */
+    public static class Fold {
+        private final int fold;
+        private final double significance;
+        private final int trainingRows;
+        private final int testRows;
+        private final int correct;
+        private final long trainingNanos;
+        private final long predictionNanos;
+        private final int nodes;
+
+        Fold(int fold, double significance, int trainingRows, int testRows,
+                int correct, long trainingNanos, long predictionNanos, int nodes) {
+            this.fold = fold;
+            this.significance = significance;
+            this.trainingRows = trainingRows;
+            this.testRows = testRows;
+            this.correct = correct;
+            this.trainingNanos = trainingNanos;
+            this.predictionNanos = predictionNanos;
+            this.nodes = nodes;
+        }
+
+        public int getFold() {
+            return fold;
+        }
+
+        /**
+         * Gets the significance level the tree was pruned at.
+         * @return Significance level; 0 if unpruned.
+         */
+        public double getSignificance() {
+            return significance;
+        }
+
+        public int getTrainingRows() {
+            return trainingRows;
+        }
+
+        public int getTestRows() {
+            return testRows;
+        }
+
+        public int getCorrect() {
+            return correct;
+        }
+
+        public double getAccuracy() {
+            return (double)correct / testRows;
+        }
+
+        /**
+         * Gets the time spent on discretisation, building, pruning and
+         * compiling the fold's tree. In a sweep, the levels share the time
+         * spent before pruning.
+         * @return Nanoseconds.
+         */
+        public long getTrainingNanos() {
+            return trainingNanos;
+        }
+
+        public long getPredictionNanos() {
+            return predictionNanos;
+        }
+
+        /**
+         * Gets the size of the (pruned) tree.
+         * @return Node count.
+         */
+        public int getNodes() {
+            return nodes;
+        }
+
+        @Override
+        public String toString() {
+            return "fold=" + fold + " significance=" + significance + " training="
+                    + trainingRows + " test=" + testRows + " accuracy=" + getAccuracy()
+                    + " train_ms=" + trainingNanos / 1e6 + " predict_ms="
+                    + predictionNanos / 1e6 + " nodes=" + nodes;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.mraguzin.decisiontrees;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import org.apache.commons.csv.CSVFormat;
+
+/**
+ * Streams a csv file straight into a {@link Dataset}. The records are read one
+ * at a time through a buffered reader and encoded into the dataset's columns
+ * right away, so no list of parsed records is ever held in memory; peak memory
+ * is proportional to the encoded data only.
+ * @author mraguzin
+ */
+public class CsvLoader {
+    static final CSVFormat WITH_HEADER = CSVFormat.DEFAULT.builder().setHeader()
+            .setSkipHeaderRecord(true).build(); // the first record names the
+    // columns
+
+    private CsvLoader() {
+    }
+
+    /**
+     * Loads a UTF-8 csv file with a header, assuming that the classification
+     * attribute resides in its last column.
+     * @param file
+     * @param classifier Decides whether a classification value is + or -
+     * @return The encoded dataset.
+     * @throws IOException
+     */
+    public static Dataset load(Path file, ClassDetector classifier) throws IOException {
+        return load(file, null, classifier, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Loads a csv file with a header.
+     * @param file
+     * @param classAttribute Name of the classification column; null means the
+     * last column
+     * @param classifier Decides whether a classification value is + or -
+     * @param charset
+     * @return The encoded dataset.
+     * @throws IOException
+     */
+    public static Dataset load(Path file, String classAttribute, ClassDetector classifier,
+            Charset charset) throws IOException {
+        try (var reader = Files.newBufferedReader(file, charset);
+                var parser = WITH_HEADER.parse(reader)) {
+            var header = parser.getHeaderNames();
+            int classIndex = classAttribute == null ? header.size() - 1
+                    : header.indexOf(classAttribute);
+            if (classIndex == -1) {
+                throw new IllegalArgumentException(file + " has no column named "
+                        + classAttribute);
+            }
+
+            var names = new ArrayList<String>(header);
+            names.remove(classIndex);
+            var builder = new Dataset.Builder(names, header.get(classIndex));
+            var row = new String[names.size()];
+
+            for (var record : parser) { // the parser only reads as we iterate
+                if (record.size() != header.size()) {
+                    throw new IllegalArgumentException("Record " + record.getRecordNumber()
+                            + " of " + file + " has " + record.size() + " columns instead of "
+                            + header.size());
+                }
+
+                for (int i = 0, j = 0; i < record.size(); ++i) {
+                    if (i != classIndex)
+                        row[j++] = record.get(i);
+                }
+
+                builder.add(row, classifier.classify(record.get(classIndex)));
+            }
+
+            return builder.build();
+        }
+    }
+}
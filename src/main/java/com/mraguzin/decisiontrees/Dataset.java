@@ -0,0 +1,348 @@
+package com.mraguzin.decisiontrees;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * Columnar, dictionary-encoded set of training examples. Every input attribute
+ * is stored as a single primitive column: categorical attributes as int codes
+ * into a per-column dictionary of distinct values and numeric attributes as
+ * raw doubles. The classification of each example is decoded only once, into
+ * a bitset, so the learner never has to touch strings again after loading.
+ * <p>
+ * The columns are buffers, which either wrap heap arrays or map a file
+ * straight from the page cache, see {@link ColumnStore#read}; they are read
+ * by row index, with the absolute get methods.
+ * @author mraguzin
+ */
+public class Dataset {
+    private final String[] attributes; // input attributes, in column order
+    private final String classAttribute;
+    private final Map<String, Integer> attributeIndex;
+    private final boolean[] numeric;
+    private final IntBuffer[] codes; // categorical columns; null for numeric ones
+    private final DoubleBuffer[] numbers; // numeric columns; null for categorical ones
+    private final List<List<String>> dictionaries; // code -> value string
+    private final BitSet classes; // set bit means a positive example
+    private final int size;
+    private final int positives;
+
+    private Dataset(Builder builder) {
+        attributes = builder.attributes;
+        classAttribute = builder.classAttribute;
+        numeric = builder.numeric;
+        size = builder.size;
+        classes = builder.classes;
+        positives = classes.cardinality();
+        attributeIndex = new HashMap<>();
+        codes = new IntBuffer[attributes.length];
+        numbers = new DoubleBuffer[attributes.length];
+        dictionaries = new ArrayList<>();
+
+        for (int i = 0; i < attributes.length; ++i) {
+            attributeIndex.put(attributes[i], i);
+            if (numeric[i]) {
+                numbers[i] = DoubleBuffer.wrap(Arrays.copyOf(builder.numbers[i], size));
+                dictionaries.add(List.of());
+            } else {
+                codes[i] = IntBuffer.wrap(Arrays.copyOf(builder.codes[i], size));
+                dictionaries.add(Collections.unmodifiableList(builder.dictionaries.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Wraps already encoded columns, which are taken over without copying.
+     * @param attributes Input attributes, in column order
+     * @param classAttribute
+     * @param numeric
+     * @param codes Categorical columns, from index 0 up to their limit; null
+     * for numeric ones
+     * @param numbers Numeric columns, likewise; null for categorical ones
+     * @param dictionaries Code -> value of every column; empty for numeric ones
+     * @param classes Set bit means a positive example
+     * @param size Number of rows
+     */
+    Dataset(String[] attributes, String classAttribute, boolean[] numeric, IntBuffer[] codes,
+            DoubleBuffer[] numbers, List<List<String>> dictionaries, BitSet classes,
+            int size) {
+        this.attributes = attributes;
+        this.classAttribute = classAttribute;
+        this.numeric = numeric;
+        this.codes = codes;
+        this.numbers = numbers;
+        this.dictionaries = new ArrayList<>();
+        for (var dictionary : dictionaries)
+            this.dictionaries.add(Collections.unmodifiableList(dictionary));
+        this.classes = classes;
+        this.size = size;
+        positives = classes.cardinality();
+        attributeIndex = new HashMap<>();
+        for (int i = 0; i < attributes.length; ++i)
+            attributeIndex.put(attributes[i], i);
+    }
+
+    /**
+     * Encodes a list of parsed csv records. This is a thin adapter for callers
+     * which still load their examples through commons-csv.
+     * @param header Map of all csv column names to their indices
+     * @param classAttribute Name of the classification column
+     * @param classifier Decides whether a classification value is + or -
+     * @param records
+     * @return The encoded dataset.
+     */
+    public static Dataset fromRecords(Map<String, Integer> header, String classAttribute,
+            ClassDetector classifier, List<CSVRecord> records) {
+        var columns = new ArrayList<Map.Entry<String, Integer>>(header.entrySet());
+        columns.sort(Map.Entry.comparingByValue());
+        var names = new ArrayList<String>();
+        for (var column : columns) {
+            if (!column.getKey().equals(classAttribute))
+                names.add(column.getKey());
+        }
+
+        var builder = new Builder(names, classAttribute);
+        var row = new String[names.size()];
+        for (var record : records) {
+            for (int i = 0; i < row.length; ++i)
+                row[i] = record.get(names.get(i));
+
+            builder.add(row, classifier.classify(record.get(classAttribute)));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Gets the number of examples.
+     * @return Row count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of input attributes (the class attribute not included).
+     * @return Column count.
+     */
+    public int attributeCount() {
+        return attributes.length;
+    }
+
+    public String attribute(int index) {
+        return attributes[index];
+    }
+
+    /**
+     * Finds the column index of the given input attribute.
+     * @param attribute
+     * @return The index or -1 if there is no such input attribute.
+     */
+    public int indexOf(String attribute) {
+        Integer index = attributeIndex.get(attribute);
+        return index == null ? -1 : index;
+    }
+
+    public String classAttribute() {
+        return classAttribute;
+    }
+
+    public boolean isNumeric(int attribute) {
+        return numeric[attribute];
+    }
+
+    /**
+     * Gets the dictionary codes of a categorical column. The returned buffer is
+     * shared and must not be modified; only its absolute get methods may be
+     * used.
+     * @param attribute
+     * @return Codes indexing into {@link #dictionary(int)}, one per row.
+     */
+    public IntBuffer codes(int attribute) {
+        return codes[attribute];
+    }
+
+    /**
+     * Gets the values of a numeric column. The returned buffer is shared and
+     * must not be modified; only its absolute get methods may be used.
+     * @param attribute
+     * @return One value per row.
+     */
+    public DoubleBuffer numbers(int attribute) {
+        return numbers[attribute];
+    }
+
+    /**
+     * Gets the distinct values of a categorical column, indexed by their codes.
+     * @param attribute
+     * @return An unmodifiable list (empty for numeric columns).
+     */
+    public List<String> dictionary(int attribute) {
+        return dictionaries.get(attribute);
+    }
+
+    /**
+     * Gets the classification of all the examples. The returned bitset is
+     * shared and must not be modified.
+     * @return Bitset where a set bit denotes a positive example.
+     */
+    public BitSet classes() {
+        return classes;
+    }
+
+    public boolean isPositive(int row) {
+        return classes.get(row);
+    }
+
+    public int positives() {
+        return positives;
+    }
+
+    public int negatives() {
+        return size - positives;
+    }
+
+    /**
+     * Incrementally encodes examples into a new {@link Dataset}. The type of
+     * each column is decided by its first value: if it parses as a number, then
+     * all the remaining entries are assumed to be numeric as well.
+     */
+    public static class Builder {
+        private final String[] attributes;
+        private final String classAttribute;
+        private boolean[] numeric;
+        private int[][] codes;
+        private double[][] numbers;
+        private List<Map<String, Integer>> lookups;
+        private List<List<String>> dictionaries;
+        private final BitSet classes = new BitSet();
+        private int size;
+        private int capacity;
+
+        public Builder(List<String> attributes, String classAttribute) {
+            this.attributes = attributes.toArray(new String[0]);
+            this.classAttribute = classAttribute;
+        }
+
+        /**
+         * Starts a dataset whose column types are already known, e.g. because
+         * it is a part of a larger one.
+         * @param attributes
+         * @param classAttribute
+         * @param numeric Whether each column is numeric
+         */
+        Builder(List<String> attributes, String classAttribute, boolean[] numeric) {
+            this(attributes, classAttribute);
+            this.numeric = numeric.clone();
+        }
+
+        /**
+         * Appends a single example.
+         * @param values Attribute values in column order
+         * @param positive Whether the example classifies as +
+         * @return This builder.
+         */
+        public Builder add(String[] values, boolean positive) {
+            if (values.length != attributes.length) {
+                throw new IllegalArgumentException("Length of example record has "
+                        + "to be equal to the number of attributes");
+            }
+
+            if (lookups == null)
+                detectTypes(values);
+            if (size == capacity)
+                grow();
+
+            for (int i = 0; i < values.length; ++i) {
+                if (numeric[i]) {
+                    numbers[i][size] = Double.parseDouble(values[i]);
+                } else {
+                    var lookup = lookups.get(i);
+                    Integer code = lookup.get(values[i]);
+                    if (code == null) {
+                        code = lookup.size();
+                        lookup.put(values[i], code);
+                        dictionaries.get(i).add(values[i]);
+                    }
+
+                    codes[i][size] = code;
+                }
+            }
+
+            if (positive)
+                classes.set(size);
+            ++size;
+
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public Dataset build() {
+            if (lookups == null)
+                detectTypes(null);
+
+            return new Dataset(this);
+        }
+
+        private void detectTypes(String[] first) {
+            int n = attributes.length;
+            boolean detect = numeric == null;
+            if (detect)
+                numeric = new boolean[n];
+            codes = new int[n][];
+            numbers = new double[n][];
+            lookups = new ArrayList<>();
+            dictionaries = new ArrayList<>();
+
+            for (int i = 0; i < n; ++i) {
+                lookups.add(new HashMap<>());
+                dictionaries.add(new ArrayList<>());
+                if (detect && first != null)
+                    numeric[i] = isNumber(first[i]);
+            }
+
+            for (int i = 0; i < n; ++i) {
+                if (numeric[i])
+                    numbers[i] = new double[capacity];
+                else
+                    codes[i] = new int[capacity];
+            }
+        }
+
+        /**
+         * Decides whether a column whose first value is the given one is
+         * numeric.
+         * @param value
+         * @return Whether the value parses as a number.
+         */
+        static boolean isNumber(String value) {
+            try {
+                Double.valueOf(value);
+                return true;
+            } catch (NumberFormatException ex) {
+                return false;
+            }
+        }
+
+        private void grow() {
+            capacity = Math.max(16, capacity + (capacity >> 1));
+            for (int i = 0; i < attributes.length; ++i) {
+                if (numeric[i])
+                    numbers[i] = Arrays.copyOf(numbers[i], capacity);
+                else
+                    codes[i] = Arrays.copyOf(codes[i], capacity);
+            }
+        }
+    }
+}
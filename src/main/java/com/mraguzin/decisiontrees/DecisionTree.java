@@ -0,0 +1,334 @@
+package com.mraguzin.decisiontrees;
+
+import guru.nidi.graphviz.attribute.Rank;
+import guru.nidi.graphviz.engine.Format;
+import guru.nidi.graphviz.engine.Graphviz;
+import static guru.nidi.graphviz.model.Factory.graph;
+import static guru.nidi.graphviz.model.Factory.node;
+import static guru.nidi.graphviz.model.Link.to;
+import guru.nidi.graphviz.model.Node;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.math3.distribution.ChiSquaredDistribution;
+
+/**
+ *
+ * This class represents a learned decision tree, independently of the order in
+ * which its nodes were built. Every node is itself a (sub)tree. The learners
+ * extend this class and only have to decide how the nodes get grown.
+ *
+ * @author mraguzin
+ */
+public abstract class DecisionTree {
+
+    protected Dataset data;
+    protected DecisionTree[] children = NO_CHILDREN; // indexed by value code;
+    // several numerical bins can share a label, so labels are only for display
+    protected String rootAttribute; // this doubles as the classification string
+    // (Yes/No or similar) for leaf nodes
+    protected int attribute = -1; // column index of rootAttribute (-1 for leaves)
+    protected AttributeSet attributeValues; // holds the set
+    // of all values a particular attribute can take on
+    protected double statisticalSignificance;
+    protected long seed; // seeds every random choice made within this node
+
+    protected static final DecisionTree[] NO_CHILDREN = {}; // of every leaf
+
+    protected static final int MULTIVALUE_THRESHOLD = 10; // threshold on the number
+    // of different attribute values which, when crossed, causes the greedy
+    // heuristic to only pick from a smaller, randomly selected subset of
+    // values (of size MULTIVALUE_THRESHOLD)
+
+    private static final Map<Double, Map<Integer, Double>> QUANTILES =
+            new ConcurrentHashMap<>(); // significance -> degrees of freedom ->
+    // critical value; shared by all the trees, as there are only a few of each
+
+    protected DecisionTree(Dataset data, AttributeSet attributeValues,
+            double pvalue, long seed) {
+        this.data = data;
+        this.attributeValues = attributeValues;
+        statisticalSignificance = pvalue;
+        this.seed = seed;
+    }
+
+    /**
+     * Gets the (positive,negative) example counts of every branch of this
+     * inner node. Entries 2k and 2k+1 belong to the branch of value code k.
+     *
+     * @return The class histogram of this node's attribute.
+     */
+    protected abstract int[] getBranchCounts();
+
+    /**
+     * Predicts + or - on the basis of the provided (attribute,value) pairs,
+     * given as a map.
+     *
+     * @param attributes
+     * @return Whether the input example classifies as + (true) or - (false).
+     */
+    public boolean predict(Map<String, String> attributes) {
+        if (attributes.size() != data.attributeCount()) {
+            throw new IllegalArgumentException("Length of example record has "
+                    + "to be equal to the number of training attributes");
+        }
+
+        return _predict(attributes);
+    }
+
+    private boolean _predict(Map<String, String> attributes) {
+        if (children.length == 0) {
+            return rootAttribute.equals("+");
+        }
+
+        int code = attributeValues.encode(attribute, attributes.get(rootAttribute));
+        if (code == -1)
+            return majority(); // a value never seen in training
+
+        return children[code]._predict(attributes);
+    }
+
+    /**
+     * Freezes this tree into its flat array form for fast inference. Pruning
+     * this tree afterwards does not affect the compiled one.
+     *
+     * @return The compiled tree.
+     */
+    public CompiledTree compile() {
+        return new CompiledTree(this);
+    }
+
+    /**
+     * Gets the number of branches of this node.
+     *
+     * @return Number of children; 0 for leaves.
+     */
+    int arity() {
+        return attribute == -1 ? 0 : attributeValues.size(attribute);
+    }
+
+    /**
+     * Gets the child this node branches to for the given value code.
+     *
+     * @param code
+     * @return The child (sub)tree.
+     */
+    DecisionTree getChild(int code) {
+        return children[code];
+    }
+
+    /**
+     * Decides the majority classification of this node's examples.
+     *
+     * @return Whether most of the examples are positive.
+     */
+    boolean majority() {
+        if (attribute == -1)
+            return rootAttribute.equals("+");
+
+        var counts = getBranchCounts();
+        int p = 0;
+        int n = 0;
+        for (int i = 0; i < counts.length; i += 2) {
+            p += counts[i];
+            n += counts[i + 1];
+        }
+
+        return Helpers.majority(p, n, seed);
+    }
+
+    /**
+     * Prunes the built decision tree using a chi-squared distribution test on
+     * every node with only leaf nodes as children. This modifies the tree; to
+     * try out several significance levels on the same tree, see
+     * {@link PruningSweep}.
+     *
+     * @return Whether this subtree was pruned.
+     */
+    public boolean prune() {
+        if (children.length == 0) {
+            return true;
+        }
+
+        boolean childrenPruned = true; // whether all the children were pruned
+        // or were already leaves
+        for (var child : children) {
+            childrenPruned &= child.prune();
+        }
+
+        if (childrenPruned) {
+            // attempt to prune this node
+            int size = attributeValues.size(attribute);
+            var counts = getBranchCounts();
+            if (chiSquared(counts, size) < chiSquaredQuantile(size - 1)) {
+                // prune
+                int nPluses = 0;
+                int nMinuses = 0;
+                for (var child : children) {
+                    if ("+".equals(child.rootAttribute)) {
+                        ++nPluses;
+                    } else {
+                        ++nMinuses;
+                    }
+                }
+
+                String majority = Helpers.majority(nPluses, nMinuses, seed)
+                        ? "+" : "-";
+
+                children = NO_CHILDREN;
+                rootAttribute = majority;
+                attribute = -1;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Computes the chi-squared statistic of a split, measuring how much the
+     * class distributions of its branches deviate from the one of the whole
+     * node. Branches without examples make the statistic NaN.
+     *
+     * @param counts Class histogram of the split, as in {@link #getBranchCounts()}
+     * @param size Number of branches
+     * @return The statistic, with size-1 degrees of freedom.
+     */
+    protected static double chiSquared(int[] counts, int size) {
+        int p = 0;
+        int n = 0;
+        for (int val = 0; val < size; ++val) {
+            p += counts[2 * val];
+            n += counts[2 * val + 1];
+        }
+
+        double delta = 0;
+        for (int val = 0; val < size; ++val) {
+            int pk = counts[2 * val];
+            int nk = counts[2 * val + 1];
+            double pkExpected = p * (double) (pk + nk) / (p + n);
+            double nkExpected = n * (double) (pk + nk) / (p + n);
+
+            delta += (pk - pkExpected) * (pk - pkExpected) / pkExpected
+                    + (nk - nkExpected) * (nk - nkExpected) / nkExpected;
+        }
+
+        return delta;
+    }
+
+    /**
+     * Gets the critical value of the chi-squared test at this tree's
+     * significance level: statistics below it are explained by chance.
+     *
+     * @param degreesOfFreedom
+     * @return The 1-significance quantile of the chi-squared distribution.
+     */
+    protected double chiSquaredQuantile(int degreesOfFreedom) {
+        return chiSquaredQuantile(statisticalSignificance, degreesOfFreedom);
+    }
+
+    /**
+     * Gets the critical value of the chi-squared test at the given
+     * significance level. The values are computed once per significance level
+     * and degrees of freedom.
+     *
+     * @param significance
+     * @param degreesOfFreedom
+     * @return The 1-significance quantile of the chi-squared distribution.
+     */
+    protected static double chiSquaredQuantile(double significance, int degreesOfFreedom) {
+        return QUANTILES.computeIfAbsent(significance, level -> new ConcurrentHashMap<>())
+                .computeIfAbsent(degreesOfFreedom, dof -> {
+                    double alpha = 1 - significance;
+                    var chiSquared = new ChiSquaredDistribution(dof);
+                    return chiSquared.inverseCumulativeProbability(alpha);
+                });
+    }
+
+    /**
+     * Compute information gain for the given attribute. This is to be used in
+     * the greedy decision tree builder as a value indicating the importance of
+     * an attribute.
+     *
+     * @param attribute
+     * @param p Number of positive examples of this (sub)tree
+     * @param n Number of negative examples of this (sub)tree
+     * @param counts The attribute's class histogram over this (sub)tree
+     * @param from Index of the histogram's first entry within counts
+     * @return Gain
+     */
+    protected double getImportance(int attribute, int p, int n, int[] counts, int from) {
+        // compute Remainder(attribute)
+        double remainder = 0;
+
+        int size = attributeValues.size(attribute);
+        int[] valueSubset = null; // attempt to only work on a smaller
+        // subset if we've crossed the size threshold
+        if (size > MULTIVALUE_THRESHOLD) {
+            var random = new SplittableRandom(Helpers.mix(seed, attribute));
+            valueSubset = attributeValues.sample(attribute, MULTIVALUE_THRESHOLD, random);
+        }
+
+        int nValues = valueSubset == null ? size : valueSubset.length;
+        for (int i = 0; i < nValues; ++i) {
+            int val = valueSubset == null ? i : valueSubset[i];
+            int pk = counts[from + 2 * val];
+            int nk = counts[from + 2 * val + 1];
+
+            double q = pk / (double) (pk + nk);
+            if (Double.isNaN(q)) {
+                continue;
+            }
+
+            remainder += ((pk + nk) / (double) (p + n)) * Helpers.getBooleanEntropy(q);
+        }
+
+        double q = p / (double) (p + n);
+        return Helpers.getBooleanEntropy(q) - remainder;
+    }
+
+    /**
+     * Draws the decision tree using Graphviz.
+     * @param file
+     */
+    public void drawTree(File file) {
+        String filename = file.getName();
+        String[] pieces = filename.split("\\.");
+        String graphname;
+        System.out.println("filename=" + filename);
+
+        if (pieces.length == 1)
+            graphname = pieces[0];
+        else
+            graphname = pieces[pieces.length - 2];
+
+        var tree = graph(graphname).graphAttr().with(Rank.dir(Rank.RankDir.TOP_TO_BOTTOM))
+                .with(recursiveDraw(new AtomicInteger()));
+        try {
+            Graphviz.fromGraph(tree).render(Format.PNG).toFile(new File(graphname));
+            Graphviz.fromGraph(tree).render(Format.SVG_STANDALONE).toFile(new File(graphname));
+        } catch (IOException ex) {
+            System.out.println("Greška pri zapisivanju slike stabla!");
+        }
+    }
+
+    private Node recursiveDraw(AtomicInteger counter) { // the counter makes
+        // node names unique within a single drawing
+        var node = node(rootAttribute+(counter.getAndIncrement())).with("label", rootAttribute);
+        if (children.length == 0)
+            return node; // return leaf
+
+        for (int code = 0; code < children.length; ++code) {
+            var child = children[code];
+            var label = attributeValues.getLabel(attribute, code);
+
+            System.out.println(rootAttribute + "->" + label);
+            node = node.link(to(child.recursiveDraw(counter)).with("label", label));
+        }
+
+        return node;
+    }
+}
@@ -1,13 +1,10 @@
 package com.mraguzin.decisiontrees;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.HashMap;
-import java.util.Map;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
 import java.io.File;
 
 /**
@@ -15,51 +12,110 @@ import java.io.File;
  * @author mraguzin
  */
 public class DecisionTrees {
+    private static final int MAX_GENERATED_SIZE = 16384; // larger trees run
+    // faster interpreted, their generated code no longer fits the caches
 
     /**
      * @param args the command line arguments
      */
     public static void main(String[] args) {
-        Reader in;
-        CSVParser records;
-        Map<String, Integer> attributes;
+        if ("--model".equals(args.length > 0 ? args[0] : null)) {
+            serveModel(args);
+            return;
+        }
+
+        if ("--generate".equals(args.length > 0 ? args[0] : null)) {
+            generate(args);
+            return;
+        }
+
+        if ("--convert".equals(args.length > 0 ? args[0] : null)) {
+            convert(args);
+            return;
+        }
+
+        Dataset data;
 
         try {
-            if (args.length < 2) {
+            if (args.length < 2 || ("--score".equals(args[1]) && args.length != 4)
+                    || ("--save".equals(args[1]) && args.length != 3)
+                    || ("--serve".equals(args[1]) && args.length != 3)
+                    || ("--cv".equals(args[1]) && args.length != 3)
+                    || ("--curve".equals(args[1]) && args.length != 3)
+                    || ("--sweep".equals(args[1]) && args.length != 3)
+                    || ("--forest".equals(args[1]) && !(args.length == 6
+                            && "--score".equals(args[3]) || args.length == 5
+                            && "--serve".equals(args[3])))) {
                 System.out.println("Upotreba: program podaci.csv novi_primjer");
+                System.out.println("          program podaci.csv --score ulaz.csv izlaz.csv");
+                System.out.println("          program podaci.csv --save model.bin");
+                System.out.println("          program podaci.csv --serve port");
+                System.out.println("          program podaci.csv --cv broj_preklopa");
+                System.out.println("          program podaci.csv --curve broj_preklopa");
+                System.out.println("          program podaci.csv --sweep broj_preklopa");
+                System.out.println("          program podaci.csv --forest broj_stabala --score ulaz.csv izlaz.csv");
+                System.out.println("          program podaci.csv --forest broj_stabala --serve port");
+                System.out.println("          program --model model.bin novi_primjer");
+                System.out.println("          program --model model.bin --score ulaz.csv izlaz.csv");
+                System.out.println("          program --model model.bin --serve port");
+                System.out.println("          program --generate izlaz.csv broj_redaka [seed]");
+                System.out.println("          program --convert podaci.csv podaci.dtc");
+                System.out.println("(umjesto podaci.csv može stajati i podaci.dtc)");
                 return;
             }
             System.out.println(args[0]);
-            in = new FileReader(args[0]);
-            records = CSVFormat.DEFAULT.withFirstRecordAsHeader().parse(in);
-            attributes = records.getHeaderMap();
-        } catch (FileNotFoundException ex) {
+            var file = Path.of(args[0]);
+            if (ColumnStore.isColumnStore(file))
+                data = ColumnStore.read(file); // already encoded
+            else
+                data = ParallelCsvLoader.load(file, DecisionTrees::isPositive);
+        } catch (NoSuchFileException ex) {
             System.out.println(args[0] + " ne postoji!");
             return;
         } catch (IOException ex) {
-            System.out.println("Greška pri čitanju csv-a");
+            System.out.println("Greška pri čitanju " + args[0]);
+            return;
+        }
+
+        System.out.println(data.classAttribute());
+        if ("--cv".equals(args[1]) || "--curve".equals(args[1])
+                || "--sweep".equals(args[1])) {
+            crossValidate(data, args[1], args[2]);
+            return;
+        }
+
+        if ("--forest".equals(args[1])) {
+            forest(data, args);
             return;
         }
 
-        String classAttribute = ""; // we assume the classification/result attribute
-        // resides in the last csv column
-        var it = attributes.entrySet().iterator();
-        int i;
-        for (i = 0; i < attributes.size(); ++i) {
-            var pair = it.next();
-            if (i == attributes.size() - 1) {
-                classAttribute = pair.getKey();
+        var tree = new DepthFirstTree(data, 0.05);
+
+        if ("--score".equals(args[1])) { // train once, then score a whole file
+            tree.prune();
+            score(generated(tree.compile()), args[2], args[3]);
+            return;
+        }
+
+        if ("--save".equals(args[1])) { // train once, serve from the file later
+            tree.prune();
+            try {
+                tree.compile().save(Path.of(args[2]));
+            } catch (IOException ex) {
+                System.out.println("Greška pri zapisivanju modela " + args[2]);
             }
+            return;
         }
 
-        System.out.println(classAttribute);
-        var tree = new DepthFirstTree(attributes, classAttribute,
-                (x) -> !x.toLowerCase().contains("no"), records.getRecords(), 0.05);
+        if ("--serve".equals(args[1])) {
+            tree.prune();
+            serve(generated(tree.compile()), args[2]);
+            return;
+        }
 
         var newexample = new HashMap<String, String>();
-        var header = records.getHeaderNames();
-        for (i = 1; i < args.length; ++i) {
-            newexample.put(header.get(i - 1), args[i]);
+        for (int i = 1; i < args.length; ++i) {
+            newexample.put(data.attribute(i - 1), args[i]);
         }
 
         // optional chi-squared pruning
@@ -67,7 +123,208 @@ public class DecisionTrees {
         
         tree.drawTree(new File(args[0]));
         
-        boolean prediction = tree.predict(newexample);
+        printPrediction(tree.compile().predict(newexample));
+    }
+
+    private static void serveModel(String[] args) {
+        if (args.length < 3 || ("--score".equals(args[2]) && args.length != 5)
+                || ("--serve".equals(args[2]) && args.length != 4)) {
+            System.out.println("Upotreba: program --model model.bin novi_primjer");
+            System.out.println("          program --model model.bin --score ulaz.csv izlaz.csv");
+            System.out.println("          program --model model.bin --serve port");
+            return;
+        }
+
+        TreeModel model;
+        long start = System.nanoTime();
+        try {
+            model = MappedTree.load(Path.of(args[1]));
+        } catch (NoSuchFileException ex) {
+            System.out.println(args[1] + " ne postoji!");
+            return;
+        } catch (IOException ex) {
+            System.out.println("Greška pri čitanju modela: " + ex.getMessage());
+            return;
+        }
+        System.out.printf("Loaded %s (%d nodes) in %.3f ms%n", args[1], model.size(),
+                (System.nanoTime() - start) / 1e6);
+
+        if ("--score".equals(args[2])) {
+            score(model, args[3], args[4]);
+            return;
+        }
+
+        if ("--serve".equals(args[2])) {
+            serve(model, args[3]);
+            return;
+        }
+
+        var newexample = new HashMap<String, String>();
+        for (int i = 2; i < args.length && i - 2 < model.attributeCount(); ++i) {
+            newexample.put(model.attribute(i - 2), args[i]);
+        }
+
+        printPrediction(model.predict(newexample));
+    }
+
+    private static void serve(TreeModel model, String port) {
+        try {
+            var server = new PredictionServer(model,
+                    new InetSocketAddress(Integer.parseInt(port)));
+            server.start(); // keeps the JVM alive
+            System.out.println("Poslužujem predviđanja na portu "
+                    + server.getAddress().getPort());
+        } catch (NumberFormatException ex) {
+            System.out.println(port + " nije ispravan broj porta!");
+        } catch (IOException ex) {
+            System.out.println("Greška pri pokretanju poslužitelja: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * We assume the classification/result attribute resides in the last csv
+     * column, and that its negative values contain "no".
+     */
+    private static boolean isPositive(String classification) {
+        return !classification.toLowerCase().contains("no");
+    }
+
+    private static void convert(String[] args) {
+        if (args.length != 3) {
+            System.out.println("Upotreba: program --convert podaci.csv podaci.dtc");
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            var data = ColumnStore.convert(Path.of(args[1]), DecisionTrees::isPositive,
+                    Path.of(args[2]));
+            System.out.printf("Converted %d examples into %s in %.3f s%n", data.size(),
+                    args[2], (System.nanoTime() - start) / 1e9);
+        } catch (NoSuchFileException ex) {
+            System.out.println(args[1] + " ne postoji!");
+        } catch (IOException ex) {
+            System.out.println("Greška pri pretvaranju " + args[1]);
+        }
+    }
+
+    private static void generate(String[] args) {
+        if (args.length < 3 || args.length > 4) {
+            System.out.println("Upotreba: program --generate izlaz.csv broj_redaka [seed]");
+            return;
+        }
+
+        try {
+            var settings = new SyntheticData().setRows(Long.parseLong(args[2]));
+            if (args.length == 4)
+                settings.setSeed(Long.parseLong(args[3]));
+            settings.write(Path.of(args[1]));
+            System.out.println("Generirano: " + settings);
+        } catch (NumberFormatException ex) {
+            System.out.println("Broj redaka i seed moraju biti cijeli brojevi!");
+        } catch (IOException ex) {
+            System.out.println("Greška pri zapisivanju " + args[1]);
+        }
+    }
+
+    /**
+     * Trains a random forest, then scores a file or serves predictions with
+     * it, as the arguments past the tree count say.
+     */
+    private static void forest(Dataset data, String[] args) {
+        int nTrees;
+        try {
+            nTrees = Integer.parseInt(args[2]);
+        } catch (NumberFormatException ex) {
+            nTrees = 0;
+        }
+        if (nTrees < 1) {
+            System.out.println(args[2] + " nije ispravan broj stabala!");
+            return;
+        }
+
+        long start = System.nanoTime();
+        var forest = new RandomForest(data, nTrees, 0, new BuildOptions());
+        System.out.printf("Built %d trees (%d nodes) in %.3f s, out-of-bag accuracy %.4f%n",
+                nTrees, forest.size(), (System.nanoTime() - start) / 1e9,
+                forest.getOutOfBagAccuracy());
+
+        if ("--score".equals(args[3]))
+            score(forest, args[4], args[5]);
+        else
+            serve(forest, args[4]);
+    }
+
+    private static void crossValidate(Dataset data, String mode, String folds) {
+        int k;
+        try {
+            k = Integer.parseInt(folds);
+        } catch (NumberFormatException ex) {
+            System.out.println(folds + " nije ispravan broj preklopa!");
+            return;
+        }
+        if (k < 2 || k > data.size()) {
+            System.out.println("Broj preklopa mora biti između 2 i broja redaka!");
+            return;
+        }
+
+        var validation = new CrossValidation(data, 0.05, new BuildOptions());
+        if ("--cv".equals(mode)) {
+            var results = validation.kFold(k);
+            for (var fold : results)
+                System.out.println(fold);
+            System.out.printf("%d-fold accuracy: %.4f%n", k, CrossValidation.accuracy(results));
+            return;
+        }
+
+        if ("--sweep".equals(mode)) {
+            double[] significances = {0, 0.001, 0.01, 0.05, 0.1, 0.2};
+            var results = validation.sweep(k, significances);
+            for (int i = 0; i < significances.length; ++i) {
+                var point = results.subList(i * k, (i + 1) * k);
+                double nodes = 0;
+                for (var fold : point)
+                    nodes += (double)fold.getNodes() / k;
+                System.out.printf("significance=%s accuracy=%.4f mean_nodes=%.1f%n",
+                        significances[i], CrossValidation.accuracy(point), nodes);
+            }
+            return;
+        }
+
+        int training = data.size() - data.size() / k; // the largest training part
+        var sizes = new int[10];
+        for (int i = 0; i < sizes.length; ++i)
+            sizes[i] = Math.max(1, training * (i + 1) / sizes.length);
+        var results = validation.learningCurve(k, sizes);
+        for (int i = 0; i < sizes.length; ++i) {
+            var point = results.subList(i * k, (i + 1) * k);
+            double trainMillis = 0;
+            for (var fold : point)
+                trainMillis += fold.getTrainingNanos() / 1e6 / k;
+            System.out.printf("training=%d accuracy=%.4f mean_train_ms=%.3f%n",
+                    point.get(0).getTrainingRows(), CrossValidation.accuracy(point),
+                    trainMillis);
+        }
+    }
+
+    /**
+     * Generates code for a tree which is going to predict many examples,
+     * falling back to the compiled tree where that does not pay off or is not
+     * possible.
+     */
+    private static TreeModel generated(CompiledTree tree) {
+        if (tree.size() > MAX_GENERATED_SIZE)
+            return tree;
+
+        try {
+            return tree.generate();
+        } catch (IllegalStateException ex) {
+            System.out.println("Generiranje koda stabla nije uspjelo: " + ex.getMessage());
+            return tree;
+        }
+    }
+
+    private static void printPrediction(boolean prediction) {
         System.out.print("Prediction outcome: ");
         if (prediction == true) {
             System.out.println("+");
@@ -75,4 +332,21 @@ public class DecisionTrees {
             System.out.println("-");
         }
     }
+
+    private static void score(TreeModel tree, String input, String output) {
+        long start = System.nanoTime();
+        long count;
+        try {
+            count = new BatchPredictor(tree).predict(Path.of(input), Path.of(output));
+        } catch (NoSuchFileException ex) {
+            System.out.println(input + " ne postoji!");
+            return;
+        } catch (IOException ex) {
+            System.out.println("Greška pri bodovanju " + input);
+            return;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Scored %d examples into %s in %.3f s%n", count, output, seconds);
+    }
 }
@@ -1,30 +1,14 @@
 package com.mraguzin.decisiontrees;
 
-import guru.nidi.graphviz.attribute.Rank;
-import guru.nidi.graphviz.engine.Format;
-import guru.nidi.graphviz.engine.Graphviz;
-import static guru.nidi.graphviz.model.Factory.graph;
-import static guru.nidi.graphviz.model.Factory.mutGraph;
-import static guru.nidi.graphviz.model.Factory.mutNode;
-import static guru.nidi.graphviz.model.Factory.node;
-import static guru.nidi.graphviz.model.Link.to;
-import guru.nidi.graphviz.model.LinkTarget;
-import guru.nidi.graphviz.model.MutableGraph;
-import guru.nidi.graphviz.model.MutableNode;
-import guru.nidi.graphviz.model.Node;
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import org.apache.commons.csv.CSVRecord;
-import org.apache.commons.math3.distribution.ChiSquaredDistribution;
 
 /**
  *
@@ -32,384 +16,337 @@ import org.apache.commons.math3.distribution.ChiSquaredDistribution;
  *
  * @author mraguzin
  */
-public class DepthFirstTree {
-
-    private Map<String, Integer> attributeNames;
-    //private int classAttributeIndex;
-    private String classAttribute;
-    private ClassDetector classifier;
-    private Map<String, DepthFirstTree> children; // the string holds the
-    // particular branch label
-    private String rootAttribute; // this doubles as the classification string
-    // (Yes/No or similar) for leaf nodes
-    private AttributeSet attributeValues; // holds the set
-    // of all values a particular attribute can take on
-    private List<CSVRecord> allExamples; // all examples relevant for this particular (sub)tree
-    private double statisticalSignificance;
-
-    private static final Random r = new Random();
-    private static final int MULTIVALUE_THRESHOLD = 10; // threshold on the number
-    // of different attribute values which, when crossed, causes the greedy
-    // heuristic to only pick from a smaller, randomly selected subset of
-    // values (of size MULTIVALUE_THRESHOLD)
-
-    private DepthFirstTree(Map<String, Integer> attributes, String classAttribute,
-            ClassDetector classifier, List<CSVRecord> allExamples,
-            AttributeSet attributeValues,
-            List<CSVRecord> parentExamples, double pvalue) {
-        attributeNames = attributes;
-        this.classAttribute = classAttribute;
-        this.classifier = classifier;
-        this.allExamples = allExamples;
-        statisticalSignificance = pvalue;
-        children = new HashMap<>();
-        System.out.println("numexamples=" + allExamples.size());
-
-        if (attributeValues == null) {
-            getAttributeValues(allExamples, attributes); // we need all the training data up-front
-            // so as to be able to construct the attribute-value sets a priori
-            // (possibly an optimisation?)
-        } else {
-            this.attributeValues = attributeValues;
-        }
-
-        buildDecisionTree(allExamples, parentExamples);
-    }
-
-    public DepthFirstTree(Map<String, Integer> attributes, String classAttribute,
-            ClassDetector classifier, List<CSVRecord> allExamples, double pvalueCutoff) {
-        this(attributes, classAttribute, classifier, allExamples, null, null, pvalueCutoff);
+public class DepthFirstTree extends DecisionTree {
+
+    private int[] rows; // row indices shared by the whole tree while it is
+    // being built; the examples relevant for this particular (sub)tree are
+    // [offset,offset+length>
+    private int offset, length;
+    private BuildOptions options;
+    private int depth; // the root is at depth 0
+    private int[] branchCounts; // histogram of the split attribute, recorded
+    // when choosing it so that pruning needs no examples
+
+    private DepthFirstTree(Dataset data, AttributeSet attributeValues,
+            int[] attributes, int[] rows, int offset, int length,
+            int parentPositives, int parentNegatives, double pvalue,
+            BuildOptions options, long seed, int depth) {
+        super(data, attributeValues, pvalue, seed);
+        this.rows = rows;
+        this.offset = offset;
+        this.length = length;
+        this.options = options;
+        this.depth = depth;
+
+        buildDecisionTree(parentPositives, parentNegatives, attributes);
+        this.rows = null; // the counts are all that is needed from now on
     }
 
-    private void getAttributeValues(List<CSVRecord> examples, Map<String, Integer> attributes) {
-        int p = 0;
-        int n = 0;
-        for (var ex : examples) {
-            if (classifier.classify(ex.get(classAttribute)) == true) {
-                ++p;
-            } else {
-                ++n;
-            }
-        }
-
-        attributeValues = new AttributeSet(attributes.size(), p, n);
-
-        for (Map.Entry<String, Integer> entry : attributeNames.entrySet()) {
-            String attribute = entry.getKey();
-            if (attribute.equals(classAttribute)) {
-                continue;
-            }
-
-            var list = new ArrayList<Pair<String, Boolean>>();
-            for (var ex : examples) {
-                boolean test = classifier.classify(ex.get(classAttribute));
-                list.add(new Pair<>(ex.get(attribute), test));
-            }
-
-            attributeValues.put(attribute, list);
-        }
+    /**
+     * Builds a decision tree from the given encoded examples.
+     *
+     * @param data
+     * @param pvalueCutoff Significance level used by {@link #prune()}
+     */
+    public DepthFirstTree(Dataset data, double pvalueCutoff) {
+        this(data, pvalueCutoff, new BuildOptions());
     }
 
     /**
-     * Predicts + or - on the basis of the provided (attribute,value) pairs,
-     * given as a map.
+     * Builds a decision tree from the given encoded examples, using the
+     * provided learner settings.
      *
-     * @param attributes
-     * @return Whether the input example classifies as + (true) or - (false).
+     * @param data
+     * @param pvalueCutoff Significance level used by {@link #prune()}
+     * @param options
      */
-    public boolean predict(Map<String, String> attributes) {
-        if (attributes.size() != attributeNames.size() - 1) {
-            throw new IllegalArgumentException("Length of example record has "
-                    + "to be equal to the number of training attributes");
-        }
-
-        return _predict(attributes);
+    public DepthFirstTree(Dataset data, double pvalueCutoff, BuildOptions options) {
+        this(data, new AttributeSet(data, options),
+                Helpers.range(data.attributeCount()), Helpers.range(data.size()),
+                0, data.size(), 0, 0, pvalueCutoff, options,
+                options.getSeed(), 0); // we need all the training data up-front
+        // so as to be able to construct the attribute-value sets a priori
     }
 
-    private boolean _predict(Map<String, String> attributes) {
-        if (children.isEmpty()) {
-            return rootAttribute.equals("+");
-        }
-
-        String valueLabel = attributeValues
-                .getLabel(rootAttribute, attributes.get(rootAttribute));
+    /**
+     * Builds a decision tree from a sample of the rows of a dataset whose
+     * attribute values have already been set up, so that many trees can
+     * share them. Rows may repeat, as in bootstrap samples; the array gets
+     * reordered.
+     */
+    DepthFirstTree(Dataset data, AttributeSet attributeValues, int[] rows,
+            double pvalueCutoff, BuildOptions options) {
+        this(data, attributeValues, Helpers.range(data.attributeCount()), rows,
+                0, rows.length, 0, 0, pvalueCutoff, options, options.getSeed(), 0);
+    }
 
-        return children.get(valueLabel)._predict(attributes);
+    public DepthFirstTree(Map<String, Integer> attributes, String classAttribute,
+            ClassDetector classifier, List<CSVRecord> allExamples, double pvalueCutoff) {
+        this(Dataset.fromRecords(attributes, classAttribute, classifier, allExamples),
+                pvalueCutoff);
     }
 
-    private void buildDecisionTree(List<CSVRecord> examples,
-            List<CSVRecord> parentExamples) {
+    private void buildDecisionTree(int parentPositives, int parentNegatives,
+            int[] attributes) {
+        var event = NodeBuildEvent.beginIfEnabled(); // null unless recorded
+        long start = options.getMetrics() == null ? 0 : System.nanoTime();
         BoolPair examplesClass;
-        var attributes = attributeNames;
+        var classes = data.classes();
 
-        if (examples.isEmpty()) {
-            boolean majority = Helpers.majority(classifier,
-                    classAttribute, parentExamples);
+        if (length == 0) {
+            boolean majority = Helpers.majority(parentPositives, parentNegatives,
+                    seed);
             if (majority == true) {
                 rootAttribute = "+";
             } else {
                 rootAttribute = "-";
             }
-        } else if ((examplesClass = Helpers.sameClassification(classifier, classAttribute, examples)).x) {
+        } else if ((examplesClass = Helpers.sameClassification(classes, rows, offset, length)).x) {
             if (examplesClass.y == true) {
                 rootAttribute = "+";
             } else {
                 rootAttribute = "-";
             }
-        } else if (attributes.isEmpty()) {
-            boolean majority = Helpers.majority(classifier, classAttribute, examples);
+        } else if (attributes.length == 0) {
+            boolean majority = Helpers.majority(classes, rows, offset, length, seed);
             if (majority == true) {
                 rootAttribute = "+";
             } else {
                 rootAttribute = "-";
             }
         } else {
-            System.out.println("atnames_size=" + attributeNames.size());
-            System.out.println("examples_size=" + examples.size());
-            var it = attributeNames.entrySet().iterator();
-            String maxAttribute = "";
-            double maxImportance = Double.MIN_VALUE;
-
-            while (it.hasNext()) { // employ the greedy heuristic and attempt
-                // to only work on a smaller subset if we've crossed the size threshold
-                var attribute = it.next();
-                if (attribute.getKey().equals(classAttribute)) {
-                    continue;
-                }
-                double importance = getImportance(attribute.getKey(), examples);
-                System.out.println(importance);
-                if (importance > maxImportance) {
-                    maxImportance = importance;
-                    maxAttribute = attribute.getKey();
+            int p = Helpers.countPositives(classes, rows, offset, length);
+            int sampled = options.getSampledAttributes();
+            int maxAttribute;
+            int scored;
+            if (sampled > 0 && sampled < attributes.length) {
+                var shuffled = shuffle(attributes, sampled);
+                maxAttribute = selectAttribute(sorted(shuffled, 0, sampled), p);
+                scored = sampled;
+                if (maxAttribute == -1) { // none of the sample has any gain;
+                    // the others get their chance before this becomes a leaf
+                    maxAttribute = selectAttribute(sorted(shuffled, sampled,
+                            attributes.length), p);
+                    scored = attributes.length;
                 }
+            } else {
+                maxAttribute = selectAttribute(attributes, p);
+                scored = attributes.length;
             }
 
-            rootAttribute = maxAttribute;
-
-            System.out.println("maxat=" + maxAttribute);
-            var valueList = attributeValues.get(maxAttribute);
-            var subAttributeNames = new HashMap<String, Integer>();
-            subAttributeNames.putAll(attributeNames);
-            subAttributeNames.remove(maxAttribute);
-
-            var handledLabels = new HashSet<String>(); // needed in order to
-            // avoid repeatedly reclassifying different numbers into the same
-            // bins (for speed, since we don't have to process certain subtrees)
-            for (var value : valueList) {
-                String valueLabel = attributeValues.getLabel(maxAttribute, value);
-                if (handledLabels.contains(valueLabel))
-                    continue;
-                
-                handledLabels.add(valueLabel);
-                var subExamples = new ArrayList<CSVRecord>();
-                for (var ex : examples) {
-                    if (attributeValues.containedIn(maxAttribute, ex.get(maxAttribute), value))
-                        subExamples.add(ex);
-                }
+            if (maxAttribute == -1) { // no attribute separates these examples
+                rootAttribute = Helpers.majority(classes, rows, offset, length,
+                        seed) ? "+" : "-";
+                report(event, start, scored);
+                return;
+            }
 
-                var subtree = new DepthFirstTree(subAttributeNames,
-                        classAttribute, classifier, subExamples, attributeValues,
-                        examples, statisticalSignificance);
+            attribute = maxAttribute;
+            rootAttribute = data.attribute(maxAttribute);
 
-                children.put(valueLabel, subtree); // recurse
+            var subAttributes = new int[attributes.length - 1];
+            int k = 0;
+            for (int candidate : attributes) {
+                if (candidate != maxAttribute)
+                    subAttributes[k++] = candidate;
             }
-        }
-    }
 
-    /**
-     * Prunes the built decision tree using a chi-squared distribution test on
-     * every node with only leaf nodes as children.
-     *
-     * @return Whether this subtree was pruned.
-     */
-    public boolean prune() {
-        if (children.isEmpty()) {
-            return true;
-        }
+            int size = attributeValues.size(maxAttribute);
+            int[] bounds = Helpers.partition(rows, offset, length,
+                    attributeValues.codes(maxAttribute), size);
+            report(event, start, scored);
+            children = new DecisionTree[size];
+            var pool = options.getBuildPool();
+            if (pool != null && length >= options.getBuildCutoff()) {
+                // the children own disjoint ranges of rows, so they can be
+                // built concurrently
+                var tasks = new ArrayList<BuildTask>();
+                for (int value = 0; value < size; ++value) {
+                    tasks.add(new BuildTask(subAttributes, bounds[value],
+                            bounds[value + 1] - bounds[value], p, length - p, value));
+                }
 
-        boolean childrenPruned = true; // whether all the children were pruned
-        // or were already leaves
-        for (var child : children.values()) {
-            childrenPruned &= child.prune();
-        }
+                if (ForkJoinTask.getPool() == pool)
+                    ForkJoinTask.invokeAll(tasks);
+                else
+                    pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
 
-        if (childrenPruned) {
-            // attempt to prune this node
-            var pair = getExampleDistribution(allExamples);
-            int p = pair.x;
-            int n = pair.y;
-            double delta = 0;
-            int degreesOfFreedom = attributeValues.size(rootAttribute) - 1;
-
-            for (var val : attributeValues.get(rootAttribute)) {
-                pair = getExampleDistributionWithValue(allExamples, rootAttribute, val);
-                int pk = pair.x;
-                int nk = pair.y;
-                double pkExpected = p * (double) (pk + nk) / (p + n);
-                double nkExpected = n * (double) (pk + nk) / (p + n);
-
-                delta += (pk - pkExpected) * (pk - pkExpected) / pkExpected
-                        + (nk - nkExpected) * (nk - nkExpected) / nkExpected;
+                for (int value = 0; value < size; ++value)
+                    children[value] = tasks.get(value).join();
+            } else {
+                for (int value = 0; value < size; ++value) {
+                    var subtree = new DepthFirstTree(data, attributeValues,
+                            subAttributes, rows, bounds[value],
+                            bounds[value + 1] - bounds[value], p, length - p,
+                            statisticalSignificance, options, Helpers.mix(seed, value),
+                            depth + 1);
+
+                    children[value] = subtree; // recurse
+                }
             }
 
-            double alpha = 1 - statisticalSignificance;
-            var chiSquared = new ChiSquaredDistribution(degreesOfFreedom);
-            double quantile = chiSquared.inverseCumulativeProbability(alpha);
-            if (delta < quantile) {
-                // prune                
-                int nPluses = 0;
-                int nMinuses = 0;
-                for (var child : children.values()) {
-                    if ("+".equals(child.rootAttribute)) {
-                        ++nPluses;
-                    } else {
-                        ++nMinuses;
-                    }
-                }
+            return;
+        }
 
-                String majority;
-                if (nPluses > nMinuses) {
-                    majority = "+";
-                } else if (nMinuses > nPluses) {
-                    majority = "-";
-                } else {
-                    majority = r.nextDouble() < 0.5 ? "+" : "-";
-                }
+        report(event, start, 0); // a leaf, decided without scoring
+    }
 
-                children.clear();
-                rootAttribute = majority;
-                return true;
+    /**
+     * Reports the work of this node, its children excluded, to the flight
+     * recorder and the metrics, whichever are enabled.
+     *
+     * @param event The node's event; null if it is not recorded
+     * @param scored Number of attributes scored
+     */
+    private void report(NodeBuildEvent event, long start, int scored) {
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.depth = depth;
+                event.rows = length;
+                event.attributesScored = scored;
+                event.rowsScanned = (long)length * scored;
+                event.attribute = attribute == -1 ? null : rootAttribute;
+                event.commit();
             }
         }
 
-        return false;
+        var metrics = options.getMetrics();
+        if (metrics != null) {
+            metrics.recordNode(depth, length, scored, System.nanoTime() - start,
+                    attribute == -1);
+        }
     }
 
     /**
-     * Returns the number of positive and negative examples in the given list.
+     * Draws a random sample of the candidate attributes by a partial
+     * Fisher-Yates shuffle.
      *
-     * @param examples
-     * @return A (positive,negative) count pair.
+     * @param candidates Candidate attribute indices
+     * @param k Sample size
+     * @return A copy of the candidates with the sample in its first k slots.
      */
-    public Pair<Integer, Integer> getExampleDistribution(List<CSVRecord> examples) {
-        return _getExampleDistribution(examples, null, null);
+    private int[] shuffle(int[] candidates, int k) {
+        var random = new SplittableRandom(Helpers.mix(seed, -1));
+        var attributes = candidates.clone();
+        for (int i = 0; i < k; ++i) {
+            int j = i + random.nextInt(attributes.length - i);
+            int tmp = attributes[i];
+            attributes[i] = attributes[j];
+            attributes[j] = tmp;
+        }
+
+        return attributes;
+    }
+
+    private static int[] sorted(int[] attributes, int from, int to) {
+        var range = Arrays.copyOfRange(attributes, from, to);
+        Arrays.sort(range); // keep ties going to the first in column order
+        return range;
     }
 
     /**
-     * Returns the number of positive and negative examples for which
-     * attribute=value holds.
+     * Picks the most important of the given attributes, scoring them
+     * concurrently if the options say so and this node is large enough.
      *
-     * @param examples
-     * @param attribute
-     * @param value
-     * @return A (positive,negative) count pair.
+     * @param attributes Candidate attribute indices, in column order
+     * @param p Number of positive examples of this (sub)tree
+     * @return The chosen attribute or -1 if none of them has any gain. The
+     * chosen attribute's histogram is kept in {@link #branchCounts}.
      */
-    public Pair<Integer, Integer> getExampleDistributionWithValue(List<CSVRecord> examples,
-            String attribute, Object value) {
-        return _getExampleDistribution(examples, attribute, value);
-    }
+    private int selectAttribute(int[] attributes, int p) {
+        var importances = new double[attributes.length];
+        var histograms = new int[attributes.length][];
+        var executor = options.getScoringExecutor();
+
+        if (executor != null && attributes.length > 1
+                && length >= options.getScoringCutoff()) {
+            var futures = new ArrayList<CompletableFuture<Double>>();
+            for (int i = 0; i < attributes.length; ++i) {
+                int candidate = attributes[i];
+                histograms[i] = new int[2 * attributeValues.size(candidate)];
+                var counts = histograms[i];
+                futures.add(CompletableFuture.supplyAsync(() -> getImportance(candidate,
+                        p, counts), executor));
+            }
 
-    private Pair<Integer, Integer> _getExampleDistribution(List<CSVRecord> examples,
-            String attribute, Object value) {
-        int p = 0;
-        int n = 0;
-
-        for (var ex : examples) {
-            if (value == null || attributeValues.containedIn(attribute, ex.get(attribute), value)) {
-                if (classifier.classify(ex.get(classAttribute)) == true) {
-                    ++p;
-                } else {
-                    ++n;
+            for (int i = 0; i < attributes.length; ++i)
+                importances[i] = futures.get(i).join();
+        } else {
+            var counts = new int[2 * attributeValues.maxSize()]; // reused
+            // by every candidate's histogram, copying out only the best one
+            double best = Double.MIN_VALUE;
+            for (int i = 0; i < attributes.length; ++i) {
+                importances[i] = getImportance(attributes[i], p, counts);
+                if (importances[i] > best) {
+                    best = importances[i];
+                    histograms[i] = Arrays.copyOf(counts,
+                            2 * attributeValues.size(attributes[i]));
                 }
             }
         }
 
-        return new Pair<>(p, n);
+        int maxAttribute = -1;
+        double maxImportance = Double.MIN_VALUE;
+        for (int i = 0; i < attributes.length; ++i) { // employ the greedy heuristic;
+            // only a strictly greater gain wins, so ties go to the first candidate
+            if (importances[i] > maxImportance) {
+                maxImportance = importances[i];
+                maxAttribute = attributes[i];
+                branchCounts = histograms[i];
+            }
+        }
+
+        return maxAttribute;
+    }
+
+    @Override
+    protected int[] getBranchCounts() {
+        return branchCounts;
     }
 
     /**
-     * Compute information gain for the given attribute. This is to be used in
-     * the greedy decision tree builder as a value indicating the importance of
-     * an attribute.
+     * Computes the histogram of the given attribute over this (sub)tree and
+     * derives the attribute's information gain from it.
      *
      * @param attribute
-     * @param examples
+     * @param p Number of positive examples of this (sub)tree
+     * @param counts Scratch buffer for the attribute's class histogram
      * @return Gain
      */
-    private double getImportance(String attribute, List<CSVRecord> examples) {
-        var pair = getExampleDistribution(examples);
-        int p = pair.x;
-        int n = pair.y;
-
-        // compute Remainder(attribute)
-        double remainder = 0;
-
-        int size = attributeValues.size(attribute);
-        List valueSubset;
-        if (size > MULTIVALUE_THRESHOLD) {
-            attributeValues.shuffle(attribute);
-            valueSubset = attributeValues.getSublist(attribute, MULTIVALUE_THRESHOLD);
-        } else {
-            valueSubset = attributeValues.get(attribute);
-        }
-
-        for (var val : valueSubset) {
-            var tmp = getExampleDistributionWithValue(examples, attribute, val);
-            int pk = tmp.x;
-            int nk = tmp.y;
-
-            double q = pk / (double) (pk + nk);
-            if (Double.isNaN(q)) {
-                continue;
-            }
-
-            remainder += ((pk + nk) / (double) (p + n)) * Helpers.getBooleanEntropy(q);
-        }
-
-        double q = p / (double) (p + n);
-        return Helpers.getBooleanEntropy(q) - remainder;
+    private double getImportance(int attribute, int p, int[] counts) {
+        Helpers.histogram(data.classes(), attributeValues.codes(attribute), rows,
+                offset, length, counts, attributeValues.size(attribute));
+        return getImportance(attribute, p, length - p, counts, 0);
     }
-    
+
     /**
-     * Draws the decision tree using Graphviz.
-     * @param file
+     * Builds a single child of this node; used by the fork-join builder.
      */
-    public void drawTree(File file) {
-        String filename = file.getName();
-        String[] pieces = filename.split("\\.");
-        String graphname;
-        System.out.println("filename=" + filename);
-
-        if (pieces.length == 1)
-            graphname = pieces[0];
-        else
-            graphname = pieces[pieces.length - 2];
-        
-        var tree = graph(graphname).graphAttr().with(Rank.dir(Rank.RankDir.TOP_TO_BOTTOM))
-                .with(recursiveDraw());
-        try {
-            Graphviz.fromGraph(tree).render(Format.PNG).toFile(new File(graphname));
-            Graphviz.fromGraph(tree).render(Format.SVG_STANDALONE).toFile(new File(graphname));
-        } catch (IOException ex) {
-            System.out.println("Greška pri zapisivanju slike stabla!");
+    private class BuildTask extends RecursiveTask<DepthFirstTree> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] attributes;
+        private final int offset, length;
+        private final int parentPositives, parentNegatives;
+        private final int value;
+
+        BuildTask(int[] attributes, int offset, int length, int parentPositives,
+                int parentNegatives, int value) {
+            this.attributes = attributes;
+            this.offset = offset;
+            this.length = length;
+            this.parentPositives = parentPositives;
+            this.parentNegatives = parentNegatives;
+            this.value = value;
         }
-    }
-    
-    private static int _counter = 0;
-    
-    private Node recursiveDraw() {
-        var node = node(rootAttribute+(_counter++)).with("label", rootAttribute);
-        if (children.isEmpty())
-            return node; // return leaf
-        
-        for (Map.Entry<String, DepthFirstTree> entry : children.entrySet()) {
-            var child = entry.getValue();
-            var label = entry.getKey();
-
-            System.out.println(rootAttribute + "->" + label);
-            node = node.link(to(child.recursiveDraw()).with("label", label));
+
+        @Override
+        protected DepthFirstTree compute() {
+            return new DepthFirstTree(data, attributeValues, attributes, rows,
+                    offset, length, parentPositives, parentNegatives,
+                    statisticalSignificance, options, Helpers.mix(seed, value),
+                    depth + 1);
         }
-        
-        return node;            
     }
 }
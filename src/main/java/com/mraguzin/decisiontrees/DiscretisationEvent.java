@@ -0,0 +1,29 @@
+package com.mraguzin.decisiontrees;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event covering the supervised binning of one numerical attribute.
+ * @author mraguzin
+ */
+@Name("com.mraguzin.decisiontrees.Discretisation")
+@Label("Numeric Attribute Discretisation")
+@Category("Decision Trees")
+@StackTrace(false)
+class DiscretisationEvent extends Event {
+    @Label("Attribute")
+    String attribute;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Split Points")
+    int splits;
+
+    @Label("Approximate")
+    boolean approximate;
+}
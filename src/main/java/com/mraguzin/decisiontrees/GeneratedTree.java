@@ -0,0 +1,258 @@
+package com.mraguzin.decisiontrees;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+/**
+ * A compiled tree turned into code: every node becomes an if over a split
+ * point or a switch over a value code, nested as the tree is, with literal
+ * thresholds and attribute indices. There is nothing left to interpret, so
+ * the JIT sees plain straight-line branches over the feature array and can
+ * profile, lay out and inline them like any other code.
+ * <p>
+ * The source is compiled in-process with the system Java compiler and loaded
+ * as a hidden class, which is unloaded again along with the model. Subtrees
+ * go into methods of their own once a method would grow past a few kilobytes
+ * of bytecode, since the JIT refuses to compile huge methods at all.
+ * Numerical nodes search their split points exactly as
+ * {@link AttributeSet#findBin} does, so the predictions are always those of
+ * the compiled tree, including for NaNs and unknown values.
+ * @author mraguzin
+ */
+public class GeneratedTree extends TreeModel {
+    private static final String CLASS_NAME = "GeneratedModel";
+    private static final int METHOD_BUDGET = 2000; // estimated bytecode bytes
+    // per generated method, well below the JIT's 8000 byte limit
+    private static final int CALL_COST = 5; // a call to a split-off subtree
+
+    private final Predicate<double[]> model;
+    private final int size;
+
+    /**
+     * Generates and loads the code of a compiled tree, given by its tables.
+     * @throws IllegalStateException If there is no Java compiler at run time
+     * or the generated code does not compile.
+     */
+    GeneratedTree(String[] attributes, List<Map<String, Integer>> dictionaries, int[] feature,
+            int[] childOffset, int[] arity, int[] thresholdOffset, double[] thresholds,
+            boolean[] outcome) {
+        super(attributes, dictionaries);
+        size = feature.length;
+        var source = new Source(feature, childOffset, arity, thresholdOffset, thresholds,
+                outcome).generate();
+        model = load(compile(source));
+    }
+
+    @Override
+    public boolean predict(double[] features) {
+        return model.test(features);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private static byte[] compile(String source) {
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null)
+            throw new IllegalStateException("No Java compiler is available at run time");
+
+        var diagnostics = new DiagnosticCollector<JavaFileObject>();
+        var bytes = new ByteArrayOutputStream();
+        var fileManager = new ForwardingJavaFileManager<>(
+                compiler.getStandardFileManager(diagnostics, null, null)) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className,
+                    JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + className + kind.extension),
+                        kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return bytes;
+                    }
+                };
+            }
+        };
+        var unit = new SimpleJavaFileObject(URI.create("mem:///" + CLASS_NAME + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        var options = List.of("-g:none", "-proc:none", "-implicit:none");
+        if (!compiler.getTask(null, fileManager, diagnostics, options, null, List.of(unit))
+                .call()) {
+            throw new IllegalStateException("The generated tree does not compile: "
+                    + diagnostics.getDiagnostics().stream().map(Object::toString)
+                            .collect(Collectors.joining("; ")));
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Predicate<double[]> load(byte[] bytes) {
+        try {
+            var hidden = MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass();
+            return (Predicate<double[]>)hidden.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("The generated tree cannot be loaded", ex);
+        }
+    }
+
+    /**
+     * Writes the source of the generated class, from the tables of a
+     * {@link CompiledTree}.
+     */
+    private static class Source {
+        private final int[] feature;
+        private final int[] childOffset;
+        private final int[] arity;
+        private final int[] thresholdOffset;
+        private final double[] thresholds;
+        private final boolean[] outcome;
+        private final boolean[] method; // node is the root of its own method
+        private final StringBuilder out = new StringBuilder();
+
+        Source(int[] feature, int[] childOffset, int[] arity, int[] thresholdOffset,
+                double[] thresholds, boolean[] outcome) {
+            this.feature = feature;
+            this.childOffset = childOffset;
+            this.arity = arity;
+            this.thresholdOffset = thresholdOffset;
+            this.thresholds = thresholds;
+            this.outcome = outcome;
+            method = new boolean[feature.length];
+            split();
+        }
+
+        /**
+         * Decides which subtrees get methods of their own. Going bottom-up
+         * (the nodes are in breadth-first order), a node whose inlined
+         * subtree would exceed the budget has its costliest children split
+         * off until it fits.
+         */
+        private void split() {
+            int n = feature.length;
+            var cost = new int[n]; // estimated bytecode of the inlined subtree
+            method[0] = true;
+            for (int i = n - 1; i >= 0; --i) {
+                if (feature[i] < 0) {
+                    cost[i] = 2;
+                    continue;
+                }
+
+                cost[i] = ownCost(i);
+                for (int k = 0; k < arity[i]; ++k)
+                    cost[i] += cost[childOffset[i] + k];
+                while (cost[i] > METHOD_BUDGET) {
+                    int costliest = -1;
+                    for (int c = childOffset[i]; c < childOffset[i] + arity[i]; ++c) {
+                        if (!method[c] && (costliest == -1 || cost[c] > cost[costliest]))
+                            costliest = c;
+                    }
+                    if (costliest == -1 || cost[costliest] <= CALL_COST)
+                        break; // a huge fan-out; nothing left to gain
+                    method[costliest] = true;
+                    cost[i] -= cost[costliest] - CALL_COST;
+                }
+            }
+        }
+
+        private int ownCost(int node) {
+            if (thresholdOffset[node] >= 0)
+                return 6 + 8 * (arity[node] - 1); // a comparison per split point
+            return 20 + 4 * arity[node]; // a tableswitch
+        }
+
+        String generate() {
+            out.append("package ").append(GeneratedTree.class.getPackageName()).append(";\n\n");
+            out.append("public final class ").append(CLASS_NAME)
+                    .append(" implements java.util.function.Predicate<double[]> {\n");
+            out.append("    @Override\n");
+            out.append("    public boolean test(double[] f) {\n");
+            out.append("        return n0(f);\n");
+            out.append("    }\n");
+            for (int i = 0; i < feature.length; ++i) {
+                if (!method[i])
+                    continue;
+
+                out.append("\n    private static boolean n").append(i).append("(double[] f) {\n");
+                node(i, 2, true);
+                out.append("    }\n");
+            }
+            out.append("}\n");
+
+            return out.toString();
+        }
+
+        private void node(int i, int depth, boolean methodRoot) {
+            if (method[i] && !methodRoot) {
+                line(depth, "return n" + i + "(f);");
+            } else if (feature[i] < 0) {
+                line(depth, "return " + outcome[i] + ";");
+            } else if (thresholdOffset[i] >= 0) {
+                line(depth, "double x" + i + " = f[" + feature[i] + "];");
+                search(i, 0, arity[i] - 1, depth);
+            } else {
+                line(depth, "switch ((int)f[" + feature[i] + "]) {");
+                for (int k = 0; k < arity[i]; ++k) {
+                    line(depth + 1, "case " + k + ": {");
+                    node(childOffset[i] + k, depth + 2, false);
+                    line(depth + 1, "}");
+                }
+                line(depth + 1, "default:"); // a value never seen in training
+                line(depth + 2, "return " + outcome[i] + ";");
+                line(depth, "}");
+            }
+        }
+
+        /**
+         * Unrolls the binary search of {@link AttributeSet#findBin} over the
+         * bins lo..hi of a numerical node.
+         */
+        private void search(int i, int lo, int hi, int depth) {
+            if (lo == hi) {
+                node(childOffset[i] + lo, depth, false);
+                return;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            line(depth, "if (x" + i + " <= " + literal(thresholds[thresholdOffset[i] + mid])
+                    + ") {");
+            search(i, lo, mid, depth + 1);
+            line(depth, "} else {");
+            search(i, mid + 1, hi, depth + 1);
+            line(depth, "}");
+        }
+
+        private static String literal(double x) {
+            if (Double.isNaN(x))
+                return "Double.NaN";
+            if (Double.isInfinite(x))
+                return x > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+            return Double.toHexString(x); // exact
+        }
+
+        private void line(int depth, String code) {
+            for (int i = 0; i < depth; ++i)
+                out.append("    ");
+            out.append(code).append('\n');
+        }
+    }
+}
@@ -1,51 +1,194 @@
 package com.mraguzin.decisiontrees;
 
-import java.util.List;
-import java.util.Random;
-import org.apache.commons.csv.CSVRecord;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
 
 /**
  * A class containing miscellaneous helper functions.
  * @author mraguzin
  */
 public class Helpers {
-    private static final Random r = new Random();
+    /**
+     * Decides the majority classification of the given rows.
+     * @param classes Classification of every row
+     * @param rows Row indices, of which only [offset,offset+length> are counted
+     * @param offset
+     * @param length
+     * @param seed Seeds the random tie-break
+     * @return Whether most of the examples are positive.
+     */
+    public static boolean majority(BitSet classes, int[] rows, int offset, int length,
+            long seed) {
+        int nPluses = countPositives(classes, rows, offset, length);
+        return majority(nPluses, length - nPluses, seed);
+    }
     
-    public static boolean majority(ClassDetector classifier, String classAttribute,
-            List<CSVRecord> examples) {
-        int nPluses = 0;
-        int nMinuses = 0;
-        
-        for (var ex : examples) {
-            if (classifier.classify(ex.get(classAttribute)) == true)
-                ++nPluses;
-            else
-                ++nMinuses;
-        }
-        
+    /**
+     * Decides the majority classification given the class counts.
+     * @param nPluses
+     * @param nMinuses
+     * @param seed Seeds the random tie-break
+     * @return Whether there are more positive examples.
+     */
+    public static boolean majority(int nPluses, int nMinuses, long seed) {
         if (nPluses > nMinuses)
             return true;
         else if (nMinuses > nPluses)
             return false;
         else // random tie-break
-            return r.nextDouble() < 0.5;
+            return new SplittableRandom(seed).nextDouble() < 0.5;
+    }
+    
+    public static BoolPair sameClassification(BitSet classes, int[] rows, int offset,
+            int length) {
+        int nPluses = countPositives(classes, rows, offset, length);
+        if (nPluses == length)
+            return new BoolPair(true, true);
+        else if (nPluses == 0)
+            return new BoolPair(true, false);
+        else
+            return new BoolPair(false, false);
     }
     
-    public static BoolPair sameClassification(ClassDetector classifier, String classAttribute,
-            List<CSVRecord> examples) {
-        boolean classification = false;
-        boolean first = true;
+    /**
+     * Counts the positive examples among the given rows.
+     * @param classes Classification of every row
+     * @param rows Row indices, of which only [offset,offset+length> are counted
+     * @param offset
+     * @param length
+     * @return Number of positive examples; the rest of them are negative.
+     */
+    public static int countPositives(BitSet classes, int[] rows, int offset, int length) {
+        int p = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            if (classes.get(rows[i]))
+                ++p;
+        }
         
-        for (var ex : examples) {
-            if (first) {
-                classification = classifier.classify(ex.get(classAttribute));
-                first = false;
+        return p;
+    }
+    
+    /**
+     * Computes the class histogram of an attribute in a single pass over the
+     * given rows. Entry 2k of the result holds the number of positive and
+     * entry 2k+1 the number of negative examples whose value code is k.
+     * @param classes Classification of every row
+     * @param codes Value code of every row
+     * @param rows Row indices, of which only [offset,offset+length> are counted
+     * @param offset
+     * @param length
+     * @param counts Output buffer of at least 2*(number of codes) entries; it
+     * gets cleared first
+     * @param size Number of distinct codes
+     */
+    public static void histogram(BitSet classes, IntBuffer codes, int[] rows, int offset,
+            int length, int[] counts, int size) {
+        if (codes.hasArray() && codes.arrayOffset() == 0) {
+            histogram(classes, codes.array(), rows, offset, length, counts, size);
+            return;
+        }
+
+        Arrays.fill(counts, 0, 2 * size, 0);
+        for (int i = offset; i < offset + length; ++i) {
+            int row = rows[i];
+            int slot = codes.get(row) << 1;
+            if (classes.get(row))
+                ++counts[slot];
+            else
+                ++counts[slot + 1];
+        }
+    }
+
+    /**
+     * {@link #histogram(BitSet, IntBuffer, int[], int, int, int[], int)} of a
+     * heap column, which indexing the array directly makes a good deal faster.
+     */
+    private static void histogram(BitSet classes, int[] codes, int[] rows, int offset,
+            int length, int[] counts, int size) {
+        Arrays.fill(counts, 0, 2 * size, 0);
+        for (int i = offset; i < offset + length; ++i) {
+            int row = rows[i];
+            int slot = codes[row] << 1;
+            if (classes.get(row))
+                ++counts[slot];
+            else
+                ++counts[slot + 1];
+        }
+    }
+    
+    /**
+     * Creates the array [0,1,...,n-1], e.g. all row or attribute indices.
+     * @param n
+     * @return The array.
+     */
+    public static int[] range(int n) {
+        var indices = new int[n];
+        for (int i = 0; i < n; ++i)
+            indices[i] = i;
+        
+        return indices;
+    }
+    
+    /**
+     * Partitions the given range of row indices in place, grouping the rows by
+     * their value code. This is a multi-way variant of the quicksort partition:
+     * one counting pass determines where each group starts, after which every
+     * row is swapped directly into its group (following permutation cycles).
+     * @param rows Row indices, of which only [offset,offset+length> is touched
+     * @param offset
+     * @param length
+     * @param codes Value code of every row
+     * @param size Number of distinct codes
+     * @return Array of size+1 group boundaries; rows with code k end up in
+     * [bounds[k],bounds[k+1]>.
+     */
+    public static int[] partition(int[] rows, int offset, int length, IntBuffer codes,
+            int size) {
+        var bounds = new int[size + 1];
+        for (int i = offset; i < offset + length; ++i)
+            ++bounds[codes.get(rows[i]) + 1];
+        
+        bounds[0] = offset;
+        for (int k = 1; k <= size; ++k)
+            bounds[k] += bounds[k - 1];
+        
+        var next = new int[size]; // first not yet filled slot of every group
+        System.arraycopy(bounds, 0, next, 0, size);
+        for (int k = 0; k < size; ++k) {
+            while (next[k] < bounds[k + 1]) {
+                int row = rows[next[k]];
+                int code = codes.get(row);
+                if (code == k) {
+                    ++next[k];
+                    continue;
+                }
+                
+                // swap the row into its own group and examine whatever was there
+                int slot = next[code]++;
+                rows[next[k]] = rows[slot];
+                rows[slot] = row;
             }
-            else if (classifier.classify(ex.get(classAttribute)) != classification)
-                return new BoolPair(false, false);
         }
         
-        return new BoolPair(true, classification);
+        return bounds;
+    }
+    
+    /**
+     * Derives a new seed from the given one. This is the SplitMix64 finalizer
+     * applied to a combination of both inputs; it is used to give every part
+     * of a computation its own random stream which does not depend on the
+     * order in which the parts get executed.
+     * @param seed
+     * @param salt Identifies the part, e.g. a child or an attribute index
+     * @return The derived seed.
+     */
+    public static long mix(long seed, long salt) {
+        long z = seed + 0x9E3779B97F4A7C15L * (salt + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
     
     public static double getBooleanEntropy(double q) {
@@ -0,0 +1,325 @@
+package com.mraguzin.decisiontrees;
+
+import java.util.Map;
+
+/**
+ *
+ * This class represents a decision tree learned incrementally, one example at
+ * a time, in the manner of a Hoeffding tree (Domingos and Hulten, "Mining
+ * High-Speed Data Streams", 2000). Every leaf keeps the class histograms of
+ * the attributes it may still split on. Once in a grace period it scores them
+ * and splits on the best one, but only if the Hoeffding bound guarantees that
+ * the best attribute is the one a batch learner would pick given all the
+ * examples, and if the split passes the same chi-squared test {@link #prune()}
+ * uses. The new leaves then start collecting statistics of their own, so
+ * examples are never stored.
+ * <p>
+ * The attribute schema, the categorical dictionaries and the numerical bins
+ * are fixed by the initial batch the tree is constructed from, so it should
+ * be large enough for the bins to be representative. Later examples
+ * whose categorical values were never seen in it stop at the first node which
+ * tests that attribute. Updates are not thread-safe; to keep predicting while
+ * learning, serve a {@link #compile() compiled} snapshot.
+ *
+ * @author mraguzin
+ */
+public class HoeffdingTree extends DecisionTree {
+
+    private final BuildOptions options;
+    private final int[] candidates; // attributes this node may still split on
+    private int[][] counts; // leaf statistics: class histogram of every
+    // candidate; null for inner nodes
+    private int p, n; // examples seen by this leaf
+    private int basePositives, baseNegatives; // examples its parent saw for
+    // this branch before splitting, used for its majority until it has its own
+    private int sinceCheck; // examples since the last split attempt
+    private int[] branchCounts; // histogram of the split attribute, kept for
+    // pruning
+
+    private HoeffdingTree(Dataset data, AttributeSet attributeValues, double pvalue,
+            long seed, BuildOptions options, int[] candidates) {
+        super(data, attributeValues, pvalue, seed);
+        this.options = options;
+        this.candidates = candidates;
+    }
+
+    /**
+     * Starts learning from the given initial batch of encoded examples.
+     *
+     * @param initial
+     * @param pvalueCutoff Significance level of the split and pruning tests
+     */
+    public HoeffdingTree(Dataset initial, double pvalueCutoff) {
+        this(initial, pvalueCutoff, new BuildOptions());
+    }
+
+    /**
+     * Starts learning from the given initial batch of encoded examples, using
+     * the provided learner settings. Besides the seed, the split confidence,
+     * grace period and tie threshold apply.
+     *
+     * @param initial
+     * @param pvalueCutoff Significance level of the split and pruning tests
+     * @param options
+     */
+    public HoeffdingTree(Dataset initial, double pvalueCutoff, BuildOptions options) {
+        this(initial, new AttributeSet(initial, options), pvalueCutoff,
+                options.getSeed(), options, Helpers.range(initial.attributeCount()));
+        rootAttribute = Helpers.majority(initial.positives(), initial.negatives(), seed)
+                ? "+" : "-";
+
+        int nAttributes = initial.attributeCount();
+        var codes = new int[nAttributes];
+        for (int row = 0; row < initial.size(); ++row) {
+            for (int a = 0; a < nAttributes; ++a)
+                codes[a] = attributeValues.codes(a).get(row);
+            learn(codes, initial.isPositive(row));
+        }
+    }
+
+    /**
+     * Learns from a single example.
+     *
+     * @param values Attribute values in column order
+     * @param positive Whether the example classifies as +
+     */
+    public void update(String[] values, boolean positive) {
+        if (values.length != data.attributeCount()) {
+            throw new IllegalArgumentException("Length of example record has "
+                    + "to be equal to the number of training attributes");
+        }
+
+        var codes = new int[values.length];
+        for (int a = 0; a < values.length; ++a)
+            codes[a] = attributeValues.encode(a, values[a]);
+        learn(codes, positive);
+    }
+
+    /**
+     * Learns from a single example given as (attribute,value) pairs.
+     *
+     * @param example
+     * @param positive Whether the example classifies as +
+     */
+    public void update(Map<String, String> example, boolean positive) {
+        var values = new String[data.attributeCount()];
+        for (int a = 0; a < values.length; ++a) {
+            values[a] = example.get(data.attribute(a));
+            if (values[a] == null) {
+                throw new IllegalArgumentException("The example is missing attribute "
+                        + data.attribute(a));
+            }
+        }
+
+        update(values, positive);
+    }
+
+    /**
+     * Learns from a batch of examples, in row order. The batch's columns are
+     * matched to the tree's attributes by name, so it can come from any file
+     * with the same attributes.
+     *
+     * @param batch
+     */
+    public void update(Dataset batch) {
+        int nAttributes = data.attributeCount();
+        var columns = new int[nAttributes];
+        var remap = new int[nAttributes][]; // batch code -> tree code
+        for (int a = 0; a < nAttributes; ++a) {
+            columns[a] = batch.indexOf(data.attribute(a));
+            if (columns[a] == -1 || batch.isNumeric(columns[a]) != data.isNumeric(a)) {
+                throw new IllegalArgumentException("The batch is missing attribute "
+                        + data.attribute(a) + " or has it with a different type");
+            }
+
+            if (!data.isNumeric(a)) {
+                var dictionary = batch.dictionary(columns[a]);
+                remap[a] = new int[dictionary.size()];
+                for (int code = 0; code < remap[a].length; ++code)
+                    remap[a][code] = attributeValues.encode(a, dictionary.get(code));
+            }
+        }
+
+        var codes = new int[nAttributes];
+        for (int row = 0; row < batch.size(); ++row) {
+            for (int a = 0; a < nAttributes; ++a) {
+                if (remap[a] != null) {
+                    codes[a] = remap[a][batch.codes(columns[a]).get(row)];
+                } else {
+                    double[] cuts = attributeValues.getCutPoints(a);
+                    codes[a] = AttributeSet.findBin(cuts, 0, cuts.length,
+                            batch.numbers(columns[a]).get(row));
+                }
+            }
+
+            learn(codes, batch.isPositive(row));
+        }
+    }
+
+    private void learn(int[] codes, boolean positive) {
+        int c = positive ? 0 : 1;
+        HoeffdingTree node = this;
+        while (node.attribute != -1) { // sort the example into its leaf
+            int code = codes[node.attribute];
+            if (code < 0)
+                return; // a value never seen in the initial batch
+            ++node.branchCounts[2 * code + c];
+            node = (HoeffdingTree) node.getChild(code);
+        }
+
+        node.learnAtLeaf(codes, c);
+    }
+
+    private void learnAtLeaf(int[] codes, int c) {
+        if (counts == null) // a fresh leaf, or one made by pruning
+            startCollecting();
+
+        if (c == 0)
+            ++p;
+        else
+            ++n;
+        for (int i = 0; i < candidates.length; ++i) {
+            int code = codes[candidates[i]];
+            if (code >= 0)
+                ++counts[i][2 * code + c];
+        }
+
+        rootAttribute = Helpers.majority(p + basePositives, n + baseNegatives, seed)
+                ? "+" : "-";
+        if (++sinceCheck >= options.getGracePeriod() && p > 0 && n > 0) {
+            sinceCheck = 0;
+            attemptSplit();
+        }
+    }
+
+    private void startCollecting() {
+        counts = new int[candidates.length][];
+        for (int i = 0; i < candidates.length; ++i)
+            counts[i] = new int[2 * attributeValues.size(candidates[i])];
+
+        if (branchCounts != null) { // pruned: what the branches saw is now ours
+            basePositives = 0;
+            baseNegatives = 0;
+            for (int k = 0; k < branchCounts.length; k += 2) {
+                basePositives += branchCounts[k];
+                baseNegatives += branchCounts[k + 1];
+            }
+            branchCounts = null;
+        }
+        p = 0;
+        n = 0;
+        sinceCheck = 0;
+    }
+
+    private void attemptSplit() {
+        int best = -1;
+        double bestGain = Double.MIN_VALUE;
+        double secondGain = 0;
+        for (int i = 0; i < candidates.length; ++i) {
+            double gain = gain(counts[i], attributeValues.size(candidates[i]));
+            if (gain > bestGain) {
+                secondGain = Math.max(secondGain, bestGain);
+                bestGain = gain;
+                best = i;
+            } else {
+                secondGain = Math.max(secondGain, gain);
+            }
+        }
+
+        if (best == -1)
+            return;
+
+        // the gain of a boolean classification ranges over [0,1], hence R=1
+        double epsilon = Math.sqrt(Math.log(1 / options.getSplitConfidence())
+                / (2.0 * (p + n)));
+        if (bestGain - secondGain <= epsilon && epsilon >= options.getTieThreshold())
+            return; // not enough evidence yet
+
+        if (isSignificant(counts[best], attributeValues.size(candidates[best])))
+            split(best);
+    }
+
+    /**
+     * Computes the information gain of a candidate over all of its values.
+     * Unlike {@link #getImportance}, this never scores a sample of the
+     * values only: the Hoeffding bound holds for the exact gain, and the
+     * estimate from a sample is biased. The gain is measured over the
+     * examples the histogram holds: those whose value was never seen in the
+     * initial batch are left out of it, and would otherwise inflate the gain
+     * of a candidate which cannot even route them.
+     */
+    private double gain(int[] histogram, int size) {
+        int hp = 0;
+        int hn = 0;
+        for (int val = 0; val < size; ++val) {
+            hp += histogram[2 * val];
+            hn += histogram[2 * val + 1];
+        }
+        if (hp + hn == 0)
+            return 0;
+
+        double remainder = 0;
+        for (int val = 0; val < size; ++val) {
+            int pk = histogram[2 * val];
+            int nk = histogram[2 * val + 1];
+            if (pk + nk > 0) {
+                remainder += (pk + nk) / (double) (hp + hn)
+                        * Helpers.getBooleanEntropy(pk / (double) (pk + nk));
+            }
+        }
+
+        return Helpers.getBooleanEntropy(hp / (double) (hp + hn)) - remainder;
+    }
+
+    /**
+     * Applies the chi-squared test to the branches which have examples, so
+     * that values this leaf has not seen yet do not rule the split out.
+     */
+    private boolean isSignificant(int[] histogram, int size) {
+        var nonEmpty = new int[histogram.length];
+        int k = 0;
+        for (int val = 0; val < size; ++val) {
+            if (histogram[2 * val] + histogram[2 * val + 1] > 0) {
+                nonEmpty[2 * k] = histogram[2 * val];
+                nonEmpty[2 * k + 1] = histogram[2 * val + 1];
+                ++k;
+            }
+        }
+
+        return k > 1 && chiSquared(nonEmpty, k) >= chiSquaredQuantile(k - 1);
+    }
+
+    private void split(int best) {
+        int splitAttribute = candidates[best];
+        int size = attributeValues.size(splitAttribute);
+        branchCounts = counts[best];
+        counts = null;
+        attribute = splitAttribute;
+        rootAttribute = data.attribute(splitAttribute);
+
+        var subCandidates = new int[candidates.length - 1];
+        for (int i = 0, k = 0; i < candidates.length; ++i) {
+            if (i != best)
+                subCandidates[k++] = candidates[i];
+        }
+
+        boolean majority = Helpers.majority(p + basePositives, n + baseNegatives, seed);
+        children = new DecisionTree[size];
+        for (int value = 0; value < size; ++value) {
+            var child = new HoeffdingTree(data, attributeValues, statisticalSignificance,
+                    Helpers.mix(seed, value), options, subCandidates);
+            child.basePositives = branchCounts[2 * value];
+            child.baseNegatives = branchCounts[2 * value + 1];
+            child.rootAttribute = child.basePositives + child.baseNegatives == 0
+                    ? (majority ? "+" : "-")
+                    : Helpers.majority(child.basePositives, child.baseNegatives,
+                            child.seed) ? "+" : "-";
+            children[value] = child;
+        }
+    }
+
+    @Override
+    protected int[] getBranchCounts() {
+        return branchCounts;
+    }
+}
@@ -0,0 +1,222 @@
+package com.mraguzin.decisiontrees;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A decision tree served straight from a memory-mapped model file, as written
+ * by {@link CompiledTree#save(Path)}. Only the attribute names and the value
+ * dictionaries are read onto the heap; the node tables are never copied, so
+ * the pages of a model are shared by every process serving it. Loading checks
+ * the tables in a single pass, so that a corrupt file cannot send a
+ * prediction out of bounds or around in circles.
+ * <p>
+ * The file is big-endian and laid out as follows (a string is an int byte
+ * count followed by that many bytes of UTF-8):
+ * <pre>
+ * int      magic ("DTRM")
+ * int      format version
+ * int      attribute count
+ *          per attribute: string name, int dictionary size (-1 for
+ *          numerical attributes), then the dictionary's values in code order
+ * int      node count n
+ * int      threshold count t
+ *          zero padding up to a multiple of 8 bytes
+ * double[t] thresholds
+ * int[n]   feature, then childOffset, arity and thresholdOffset
+ * byte[n]  outcome (1 for +)
+ * </pre>
+ * The node tables are those of {@link CompiledTree}, which this class
+ * traverses the same way.
+ * @author mraguzin
+ */
+public class MappedTree extends TreeModel {
+    static final int MAGIC = 0x4454524d; // "DTRM"
+    static final int VERSION = 1;
+
+    private final IntBuffer feature;
+    private final IntBuffer childOffset;
+    private final IntBuffer arity;
+    private final IntBuffer thresholdOffset;
+    private final DoubleBuffer thresholds;
+    private final ByteBuffer outcome;
+    private final int size;
+
+    private MappedTree(String[] attributes, ArrayList<Map<String, Integer>> dictionaries,
+            ByteBuffer buffer) {
+        super(attributes, dictionaries);
+        size = buffer.getInt();
+        int nThresholds = buffer.getInt();
+        buffer.position((buffer.position() + Double.BYTES - 1) & -Double.BYTES);
+
+        thresholds = slice(buffer, Math.multiplyExact(nThresholds, Double.BYTES))
+                .asDoubleBuffer();
+        int tableBytes = Math.multiplyExact(size, Integer.BYTES);
+        feature = slice(buffer, tableBytes).asIntBuffer();
+        childOffset = slice(buffer, tableBytes).asIntBuffer();
+        arity = slice(buffer, tableBytes).asIntBuffer();
+        thresholdOffset = slice(buffer, tableBytes).asIntBuffer();
+        outcome = slice(buffer, size);
+    }
+
+    /**
+     * Checks that every path through the node tables stays within them. The
+     * children of a node come after it, which also rules out cycles.
+     * @return A description of the first inconsistency, or null if there is
+     * none.
+     */
+    private String checkNodes() {
+        if (size == 0)
+            return "no nodes";
+        for (int i = 0; i < size; ++i) {
+            int f = feature.get(i);
+            if (f < -1 || f >= attributes.length)
+                return "node " + i + " splits on attribute " + f + " of " + attributes.length;
+            if (f == -1)
+                continue;
+
+            int n = arity.get(i);
+            long first = childOffset.get(i);
+            if (n < 1 || first <= i || first + n > size)
+                return "node " + i + " has children " + first + "-" + (first + n - 1)
+                        + " of " + size;
+            long from = thresholdOffset.get(i);
+            if (from < -1 || from + n - 1 > thresholds.limit())
+                return "node " + i + " has split points " + from + "-" + (from + n - 2)
+                        + " of " + thresholds.limit();
+        }
+
+        return null;
+    }
+
+    /**
+     * Maps a model file into memory.
+     * @param file
+     * @return The model, ready to predict.
+     * @throws IOException If the file cannot be read or is not a model of a
+     * supported version.
+     */
+    public static MappedTree load(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } // the mapping outlives the channel
+
+        try {
+            if (buffer.getInt() != MAGIC)
+                throw new IOException(file + " is not a decision tree model");
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IOException(file + " has unsupported model version " + version);
+
+            // an attribute takes at least its name's length and its size
+            var attributes = new String[checkCount(buffer, buffer.getInt(),
+                    2 * Integer.BYTES, file)];
+            var dictionaries = new ArrayList<Map<String, Integer>>(attributes.length);
+            for (int i = 0; i < attributes.length; ++i) {
+                attributes[i] = readString(buffer, file);
+                int size = buffer.getInt();
+                if (size == -1) {
+                    dictionaries.add(null);
+                    continue;
+                }
+
+                checkCount(buffer, size, Integer.BYTES, file);
+                var dictionary = new HashMap<String, Integer>(2 * size);
+                for (int code = 0; code < size; ++code)
+                    dictionary.put(readString(buffer, file), code);
+                dictionaries.add(dictionary);
+            }
+
+            var tree = new MappedTree(attributes, dictionaries, buffer);
+            var problem = tree.checkNodes();
+            if (problem != null)
+                throw new IOException(file + " is corrupt: " + problem);
+            return tree;
+        } catch (BufferUnderflowException | IllegalArgumentException
+                | IndexOutOfBoundsException | ArithmeticException ex) {
+            throw new IOException(file + " is truncated or corrupt", ex);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        var slice = buffer.slice().limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static String readString(ByteBuffer buffer, Path file) throws IOException {
+        var bytes = new byte[checkCount(buffer, buffer.getInt(), 1, file)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks a count just read against what the rest of the file can hold,
+     * given the least number of bytes each item takes, before anything gets
+     * allocated for the items.
+     */
+    private static int checkCount(ByteBuffer buffer, int count, int itemBytes, Path file)
+            throws IOException {
+        if (count < 0 || count > buffer.remaining() / itemBytes)
+            throw new IOException(file + " is truncated or corrupt: bad count " + count
+                    + " at byte " + (buffer.position() - Integer.BYTES));
+        return count;
+    }
+
+    @Override
+    public boolean predict(double[] features) {
+        int node = 0;
+        int f;
+        while ((f = feature.get(node)) >= 0) {
+            double x = features[f];
+            int n = arity.get(node);
+            int from = thresholdOffset.get(node);
+            int code;
+            if (from >= 0) {
+                code = findBin(from, n - 1, x);
+            } else {
+                code = (int)x;
+                if (code < 0 || code >= n)
+                    return outcome.get(node) != 0; // unknown value
+            }
+
+            node = childOffset.get(node) + code;
+        }
+
+        return outcome.get(node) != 0;
+    }
+
+    /**
+     * {@link AttributeSet#findBin(double[], int, int, double)} over the
+     * mapped thresholds.
+     */
+    private int findBin(int from, int count, double value) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (value <= thresholds.get(from + mid))
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+
+        return lo;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
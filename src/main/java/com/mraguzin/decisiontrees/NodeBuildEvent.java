@@ -0,0 +1,54 @@
+package com.mraguzin.decisiontrees;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event covering the work of a single tree node, its children excluded.
+ * It is only recorded while a flight recording has it enabled, e.g. with
+ * -XX:StartFlightRecording; otherwise {@link #beginIfEnabled()} does not even
+ * allocate it.
+ * @author mraguzin
+ */
+@Name("com.mraguzin.decisiontrees.NodeBuild")
+@Label("Decision Tree Node")
+@Category("Decision Trees")
+@Description("Work done by a single node of a tree build, its children excluded")
+@StackTrace(false)
+class NodeBuildEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(NodeBuildEvent.class);
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Attributes Scored")
+    int attributesScored;
+
+    @Label("Rows Scanned")
+    @Description("Rows times attributes scored")
+    long rowsScanned;
+
+    @Label("Split Attribute")
+    @Description("Attribute the node splits on; absent for leaves")
+    String attribute;
+
+    /**
+     * Starts timing a node, if any recording has this event enabled.
+     * @return The started event, or null if it would not be recorded anyway.
+     */
+    static NodeBuildEvent beginIfEnabled() {
+        if (!TYPE.isEnabled())
+            return null;
+        var event = new NodeBuildEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,319 @@
+package com.mraguzin.decisiontrees;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.commons.csv.CSVFormat;
+
+/**
+ * Loads a csv file into a {@link Dataset} on many cores. The file is cut into
+ * byte ranges which are parsed concurrently, each into a partial columnar
+ * block of its own, and the blocks are then concatenated, with their
+ * dictionaries reconciled. The result is the very same dataset
+ * {@link CsvLoader} produces: the same column types, dictionaries and codes.
+ * <p>
+ * The ranges have to start at record boundaries, which a quoted field with a
+ * newline in it makes impossible to spot locally. So a first, parallel pass
+ * counts the quotes of every range and notes where its first newline would
+ * be under either quoting state; the parities of the counts then tell which
+ * newline actually ends a record. Both passes read the file, so the second
+ * one is usually served from the page cache.
+ * <p>
+ * The charset must encode the newline and the double quote as their single
+ * ASCII bytes, and never use those bytes otherwise, as UTF-8 and the
+ * single-byte charsets do.
+ * @author mraguzin
+ */
+public class ParallelCsvLoader {
+    private static final int CHUNK_SIZE = 1 << 23; // bytes parsed by a single task
+
+    private ParallelCsvLoader() {
+    }
+
+    /**
+     * Loads a UTF-8 csv file with a header, assuming that the classification
+     * attribute resides in its last column, on the common fork-join pool.
+     * @param file
+     * @param classifier Decides whether a classification value is + or -
+     * @return The encoded dataset.
+     * @throws IOException
+     */
+    public static Dataset load(Path file, ClassDetector classifier) throws IOException {
+        return load(file, null, classifier, StandardCharsets.UTF_8, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads a csv file with a header.
+     * @param file
+     * @param classAttribute Name of the classification column; null means the
+     * last column
+     * @param classifier Decides whether a classification value is + or -
+     * @param charset
+     * @param pool Pool the parsing runs on
+     * @return The encoded dataset.
+     * @throws IOException
+     */
+    public static Dataset load(Path file, String classAttribute, ClassDetector classifier,
+            Charset charset, ForkJoinPool pool) throws IOException {
+        if (!Arrays.equals("\n\"".getBytes(charset), new byte[] {'\n', '"'}))
+            throw new IllegalArgumentException(charset + " is not ASCII-compatible");
+
+        List<String> header;
+        String[] first; // the first record decides the column types
+        try (var reader = Files.newBufferedReader(file, charset);
+                var parser = CsvLoader.WITH_HEADER.parse(reader)) {
+            header = parser.getHeaderNames();
+            var iterator = parser.iterator();
+            first = iterator.hasNext() ? iterator.next().values() : null;
+        }
+
+        int classIndex = classAttribute == null ? header.size() - 1
+                : header.indexOf(classAttribute);
+        if (classIndex == -1)
+            throw new IllegalArgumentException(file + " has no column named " + classAttribute);
+        var names = new ArrayList<String>(header);
+        names.remove(classIndex);
+        if (first == null)
+            return new Dataset.Builder(names, header.get(classIndex)).build();
+
+        var numeric = new boolean[names.size()];
+        for (int i = 0, j = 0; i < first.length && j < numeric.length; ++i) {
+            if (i != classIndex)
+                numeric[j++] = Dataset.Builder.isNumber(first[i]);
+        }
+
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = findRecordBounds(channel, pool);
+            var blocks = pool.submit(() -> IntStream.range(0, bounds.length - 1).parallel()
+                    .mapToObj(chunk -> {
+                        try {
+                            return parse(channel, bounds[chunk], bounds[chunk + 1], charset,
+                                    header, classIndex, names, numeric, classifier, file);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    })
+                    .collect(Collectors.toList())).join();
+
+            return concatenate(blocks, names, header.get(classIndex), numeric, pool);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Cuts the records past the header into ranges of roughly
+     * {@link #CHUNK_SIZE} bytes.
+     * @return The byte offsets the ranges start at, followed by the file size;
+     * ranges may be empty.
+     */
+    private static long[] findRecordBounds(FileChannel channel, ForkJoinPool pool)
+            throws IOException {
+        long size = channel.size();
+        long start = endOfHeader(channel);
+        int chunks = (int)Math.max(1, (size - start + CHUNK_SIZE - 1) / CHUNK_SIZE);
+
+        // per chunk: its quote count and the offset of its first newline after
+        // an even and after an odd number of its quotes (-1 if none)
+        long[][] scans = pool.submit(() -> IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> {
+                    long from = start + (long)chunk * CHUNK_SIZE;
+                    byte[] bytes;
+                    try {
+                        bytes = read(channel, from, Math.min(size, from + CHUNK_SIZE));
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    long quotes = 0;
+                    long[] scan = {0, -1, -1};
+                    for (int i = 0; i < bytes.length; ++i) {
+                        if (bytes[i] == '"') {
+                            ++quotes;
+                        } else if (bytes[i] == '\n') {
+                            int parity = (int)(quotes & 1);
+                            if (scan[1 + parity] == -1)
+                                scan[1 + parity] = from + i;
+                        }
+                    }
+                    scan[0] = quotes;
+                    return scan;
+                })
+                .toArray(long[][]::new)).join();
+
+        var bounds = new long[chunks + 1];
+        bounds[0] = start;
+        bounds[chunks] = size;
+        long quotes = scans[0][0];
+        for (int chunk = 1; chunk < chunks; ++chunk) {
+            // a chunk starting inside a quoted field has its first record
+            // boundary after an odd number of its own quotes
+            long newline = scans[chunk][1 + (int)(quotes & 1)];
+            bounds[chunk] = newline == -1 ? -1 : newline + 1;
+            quotes += scans[chunk][0];
+        }
+        for (int chunk = chunks - 1; chunk > 0; --chunk) { // a chunk without a
+            // boundary of its own belongs to the range before it
+            if (bounds[chunk] == -1)
+                bounds[chunk] = bounds[chunk + 1];
+        }
+
+        return bounds;
+    }
+
+    /**
+     * Finds the byte offset just past the header record.
+     */
+    private static long endOfHeader(FileChannel channel) throws IOException {
+        long size = channel.size();
+        boolean quoted = false;
+        boolean blank = true; // blank lines before the header are skipped
+        for (long from = 0; from < size; from += CHUNK_SIZE) {
+            var bytes = read(channel, from, Math.min(size, from + CHUNK_SIZE));
+            for (int i = 0; i < bytes.length; ++i) {
+                if (bytes[i] == '"') {
+                    quoted = !quoted;
+                } else if (bytes[i] == '\n' && !quoted && !blank) {
+                    return from + i + 1;
+                }
+                if (bytes[i] != '\n' && bytes[i] != '\r')
+                    blank = false;
+            }
+        }
+
+        return size;
+    }
+
+    private static byte[] read(FileChannel channel, long from, long to) throws IOException {
+        var bytes = new byte[(int)(to - from)];
+        var buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) < 0)
+                throw new IOException("Unexpected end of file");
+        }
+
+        return bytes;
+    }
+
+    private static Dataset parse(FileChannel channel, long from, long to, Charset charset,
+            List<String> header, int classIndex, List<String> names, boolean[] numeric,
+            ClassDetector classifier, Path file) throws IOException {
+        var builder = new Dataset.Builder(names, header.get(classIndex), numeric);
+        if (from == to)
+            return builder.build();
+
+        var text = new String(read(channel, from, to), charset);
+        var row = new String[names.size()];
+        for (var record : CSVFormat.DEFAULT.parse(new StringReader(text))) {
+            if (record.size() != header.size()) {
+                throw new IllegalArgumentException("A record after byte " + from + " of "
+                        + file + " has " + record.size() + " columns instead of "
+                        + header.size());
+            }
+
+            for (int i = 0, j = 0; i < record.size(); ++i) {
+                if (i != classIndex)
+                    row[j++] = record.get(i);
+            }
+
+            builder.add(row, classifier.classify(record.get(classIndex)));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Concatenates the blocks in order. Every categorical value gets the code
+     * of its first occurrence, so the codes are the same as those of a
+     * sequential load.
+     */
+    private static Dataset concatenate(List<Dataset> blocks, List<String> names,
+            String classAttribute, boolean[] numeric, ForkJoinPool pool) {
+        int nAttributes = names.size();
+        var offsets = new int[blocks.size() + 1];
+        for (int b = 0; b < blocks.size(); ++b)
+            offsets[b + 1] = Math.addExact(offsets[b], blocks.get(b).size());
+        int size = offsets[blocks.size()];
+
+        var codes = new int[nAttributes][];
+        var numbers = new double[nAttributes][];
+        var dictionaries = new ArrayList<List<String>>();
+        var remaps = new int[nAttributes][][]; // block -> block code -> code
+        for (int i = 0; i < nAttributes; ++i) {
+            var dictionary = new ArrayList<String>();
+            dictionaries.add(dictionary);
+            if (numeric[i]) {
+                numbers[i] = new double[size];
+                continue;
+            }
+
+            codes[i] = new int[size];
+            remaps[i] = new int[blocks.size()][];
+            var lookup = new HashMap<String, Integer>();
+            for (int b = 0; b < blocks.size(); ++b) {
+                var blockDictionary = blocks.get(b).dictionary(i);
+                remaps[i][b] = new int[blockDictionary.size()];
+                for (int code = 0; code < remaps[i][b].length; ++code) {
+                    var value = blockDictionary.get(code);
+                    Integer global = lookup.get(value);
+                    if (global == null) {
+                        global = dictionary.size();
+                        lookup.put(value, global);
+                        dictionary.add(value);
+                    }
+                    remaps[i][b][code] = global;
+                }
+            }
+        }
+
+        pool.submit(() -> IntStream.range(0, blocks.size()).parallel().forEach(b -> {
+            var block = blocks.get(b);
+            for (int i = 0; i < nAttributes; ++i) {
+                if (numeric[i]) {
+                    block.numbers(i).get(0, numbers[i], offsets[b], block.size());
+                } else {
+                    var blockCodes = block.codes(i);
+                    var remap = remaps[i][b];
+                    for (int row = 0; row < block.size(); ++row)
+                        codes[i][offsets[b] + row] = remap[blockCodes.get(row)];
+                }
+            }
+        })).join();
+
+        var classes = new BitSet(size);
+        for (int b = 0; b < blocks.size(); ++b) {
+            var blockClasses = blocks.get(b).classes();
+            for (int row = blockClasses.nextSetBit(0); row >= 0;
+                    row = blockClasses.nextSetBit(row + 1))
+                classes.set(offsets[b] + row);
+        }
+
+        var codeColumns = new IntBuffer[nAttributes];
+        var numberColumns = new DoubleBuffer[nAttributes];
+        for (int i = 0; i < nAttributes; ++i) {
+            if (numeric[i])
+                numberColumns[i] = DoubleBuffer.wrap(numbers[i]);
+            else
+                codeColumns[i] = IntBuffer.wrap(codes[i]);
+        }
+
+        return new Dataset(names.toArray(new String[0]), classAttribute, numeric,
+                codeColumns, numberColumns, dictionaries, classes, size);
+    }
+}
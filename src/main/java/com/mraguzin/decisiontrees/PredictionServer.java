@@ -0,0 +1,326 @@
+package com.mraguzin.decisiontrees;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves predictions of a single, warm model over HTTP, using the JDK's
+ * built-in server. Endpoints:
+ * <ul>
+ * <li>POST /predict with a JSON object of (attribute, value) pairs answers
+ * {"prediction":"+"} or {"prediction":"-"}; a JSON array of such objects
+ * answers an array of predictions, in order.</li>
+ * <li>POST /predict with a text/csv body (with a header) answers the same csv
+ * with a prediction column appended, see {@link BatchPredictor}.</li>
+ * <li>GET /stats reports request counts, latency and throughput since the
+ * start.</li>
+ * </ul>
+ * Bad requests are answered with 400 and unexpected failures with 500; both
+ * count as errors in the stats. Every request gets its own virtual thread
+ * when the runtime has them, and a pooled platform thread otherwise.
+ * @author mraguzin
+ */
+public class PredictionServer {
+    private final TreeModel model;
+    private final BatchPredictor batchPredictor;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private long startTime;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param model
+     * @param address Address to listen on; port 0 picks a free one
+     * @throws IOException If the address cannot be bound.
+     */
+    public PredictionServer(TreeModel model, InetSocketAddress address) throws IOException {
+        this.model = model;
+        batchPredictor = new BatchPredictor(model);
+        server = HttpServer.create(address, 0);
+        executor = newPerRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/predict", this::handlePredict);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    /**
+     * Gets a virtual-thread-per-task executor, falling back to a cached pool
+     * of platform threads on runtimes without virtual threads.
+     */
+    private static ExecutorService newPerRequestExecutor() {
+        try {
+            var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        startTime = System.nanoTime();
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, giving the ones in flight up to the given
+     * number of seconds to finish.
+     * @param delay
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.shutdown();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void handlePredict(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "text/plain", "Only POST is supported\n");
+                errors.increment();
+                return;
+            }
+
+            var type = exchange.getRequestHeaders().getFirst("Content-Type");
+            try {
+                if (type != null && type.startsWith("text/csv"))
+                    predictCsv(exchange);
+                else
+                    predictJson(exchange);
+            } catch (IllegalArgumentException | UncheckedIOException ex) { // bad
+                // numbers or malformed csv included
+                respond(exchange, 400, "text/plain", ex.getMessage() + "\n");
+                errors.increment();
+                return;
+            } catch (RuntimeException ex) { // a bug rather than a bad request,
+                // which must not leave the client hanging
+                errors.increment();
+                respond(exchange, 500, "text/plain", "Internal error: " + ex + "\n");
+                return;
+            }
+
+            long elapsed = System.nanoTime() - start;
+            requests.increment();
+            totalNanos.add(elapsed);
+            maxNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    private void predictCsv(HttpExchange exchange) throws IOException {
+        var input = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8);
+        var buffer = new ByteArrayOutputStream(); // the csv has to be read whole
+        // before we know whether to answer with 200 or 400
+        var output = new OutputStreamWriter(buffer, StandardCharsets.UTF_8);
+        try {
+            rows.add(batchPredictor.predict(input, output));
+        } catch (IOException ex) { // a malformed header or record, reported
+            // as a bad request like the other parse errors
+            throw new UncheckedIOException(ex);
+        }
+        output.flush();
+        respond(exchange, 200, "text/csv; charset=utf-8", buffer.toByteArray());
+    }
+
+    private void predictJson(HttpExchange exchange) throws IOException {
+        var body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        var parser = new JsonParser(body);
+        var values = new String[model.attributeCount()];
+        var features = new double[values.length];
+
+        if (parser.peek() == '[') {
+            var examples = parser.parseArray();
+            var answer = new StringBuilder("[");
+            for (int i = 0; i < examples.size(); ++i) {
+                if (i > 0)
+                    answer.append(',');
+                answer.append(predict(examples.get(i), values, features) ? "\"+\"" : "\"-\"");
+            }
+            answer.append("]\n");
+            rows.add(examples.size());
+            respond(exchange, 200, "application/json", answer.toString());
+        } else {
+            boolean prediction = predict(parser.parseObject(), values, features);
+            parser.end();
+            rows.increment();
+            respond(exchange, 200, "application/json",
+                    "{\"prediction\":\"" + (prediction ? '+' : '-') + "\"}\n");
+        }
+    }
+
+    private boolean predict(Map<String, String> example, String[] values, double[] features) {
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = example.get(model.attribute(i));
+            if (values[i] == null) {
+                throw new IllegalArgumentException("The example is missing attribute "
+                        + model.attribute(i));
+            }
+        }
+
+        model.encode(values, features);
+        return model.predict(features);
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            long count = requests.sum();
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            double meanMillis = count == 0 ? 0 : totalNanos.sum() / 1e6 / count;
+            var stats = String.format(Locale.ROOT, "{\"requests\":%d,\"errors\":%d,"
+                    + "\"rows\":%d,\"meanLatencyMs\":%.3f,\"maxLatencyMs\":%.3f,"
+                    + "\"requestsPerSecond\":%.1f,\"rowsPerSecond\":%.1f,"
+                    + "\"uptimeSeconds\":%.1f}%n", count, errors.sum(), rows.sum(),
+                    meanMillis, maxNanos.get() / 1e6, count / seconds,
+                    rows.sum() / seconds, seconds);
+            respond(exchange, 200, "application/json", stats);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String type,
+            String body) throws IOException {
+        respond(exchange, status, type, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String type,
+            byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Just enough of a JSON parser for examples: an object whose values are
+     * strings, numbers or booleans, or an array of such objects. Every value
+     * is kept as its text, which is what {@link TreeModel#encode} expects.
+     */
+    private static class JsonParser {
+        private final String s;
+        private int pos;
+
+        JsonParser(String s) {
+            this.s = s;
+        }
+
+        char peek() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos)))
+                ++pos;
+            if (pos == s.length())
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            return s.charAt(pos);
+        }
+
+        void expect(char c) {
+            if (peek() != c)
+                throw new IllegalArgumentException("Expected '" + c + "' at offset " + pos);
+            ++pos;
+        }
+
+        void end() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos)))
+                ++pos;
+            if (pos != s.length())
+                throw new IllegalArgumentException("Trailing data at offset " + pos);
+        }
+
+        List<Map<String, String>> parseArray() {
+            var list = new ArrayList<Map<String, String>>();
+            expect('[');
+            if (peek() == ']') {
+                ++pos;
+            } else {
+                do {
+                    list.add(parseObject());
+                } while (peek() == ',' && ++pos > 0);
+                expect(']');
+            }
+
+            end();
+            return list;
+        }
+
+        Map<String, String> parseObject() {
+            var object = new HashMap<String, String>();
+            expect('{');
+            if (peek() == '}') {
+                ++pos;
+                return object;
+            }
+
+            do {
+                var key = parseString();
+                expect(':');
+                object.put(key, peek() == '"' ? parseString() : parseLiteral());
+            } while (peek() == ',' && ++pos > 0);
+
+            expect('}');
+            return object;
+        }
+
+        private String parseLiteral() {
+            int start = pos;
+            while (pos < s.length() && ",}] \t\r\n".indexOf(s.charAt(pos)) == -1)
+                ++pos;
+            var literal = s.substring(start, pos);
+            if (literal.isEmpty() || literal.equals("null"))
+                throw new IllegalArgumentException("Expected a value at offset " + start);
+            return literal;
+        }
+
+        private String parseString() {
+            expect('"');
+            var sb = new StringBuilder();
+            while (true) {
+                if (pos >= s.length())
+                    throw new IllegalArgumentException("Unterminated JSON string");
+                char c = s.charAt(pos++);
+                if (c == '"')
+                    return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+
+                if (pos >= s.length())
+                    throw new IllegalArgumentException("Unterminated JSON string");
+                char escaped = s.charAt(pos++);
+                switch (escaped) {
+                    case 'n': sb.append('\n'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > s.length())
+                            throw new IllegalArgumentException("Bad unicode escape");
+                        sb.append((char)Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: sb.append(escaped); // " \ /
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.mraguzin.decisiontrees;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+
+/**
+ * Prunes a single unpruned tree at many significance levels without touching
+ * it. The chi-squared statistic and degrees of freedom of every inner node are
+ * computed once, up front; pruning at a given level is then a single
+ * bottom-up pass comparing them against the (cached) critical values, and
+ * yields a compiled model. The decisions, and hence the models, are exactly
+ * those {@link DecisionTree#prune()} would arrive at on a fresh copy of the
+ * tree built with that level.
+ * <p>
+ * The tree must not be pruned or otherwise modified while a sweep uses it.
+ * A sweep is immutable, so it may compile several levels concurrently.
+ * @author mraguzin
+ */
+public class PruningSweep {
+    private final DecisionTree tree;
+    private final DecisionTree[] nodes; // breadth-first order, so every child
+    // comes after its parent
+    private final int[] firstChild; // index of the first child; -1 for leaves
+    private final int[] arity;
+    private final double[] statistic; // chi-squared statistic of inner nodes
+    private final int[] degreesOfFreedom;
+
+    /**
+     * @param tree An unpruned tree
+     */
+    public PruningSweep(DecisionTree tree) {
+        this.tree = tree;
+        var list = new ArrayList<DecisionTree>();
+        var queue = new ArrayDeque<DecisionTree>();
+        queue.add(tree);
+        while (!queue.isEmpty()) {
+            var node = queue.remove();
+            list.add(node);
+            for (int code = 0; code < node.arity(); ++code)
+                queue.add(node.getChild(code));
+        }
+
+        int n = list.size();
+        nodes = list.toArray(new DecisionTree[n]);
+        firstChild = new int[n];
+        arity = new int[n];
+        statistic = new double[n];
+        degreesOfFreedom = new int[n];
+        int nextChild = 1;
+        for (int i = 0; i < n; ++i) {
+            arity[i] = nodes[i].arity();
+            if (arity[i] == 0) {
+                firstChild[i] = -1;
+                continue;
+            }
+
+            firstChild[i] = nextChild;
+            nextChild += arity[i];
+            statistic[i] = DecisionTree.chiSquared(nodes[i].getBranchCounts(), arity[i]);
+            degreesOfFreedom[i] = arity[i] - 1;
+        }
+    }
+
+    /**
+     * Compiles the tree as pruned at the given significance level.
+     * @param significance Significance level; 0 leaves the tree unpruned
+     * @return The compiled model.
+     */
+    public CompiledTree compile(double significance) {
+        if (significance == 0)
+            return new CompiledTree(tree);
+
+        return new CompiledTree(tree, collapse(significance));
+    }
+
+    /**
+     * Compiles the tree as pruned at each of the given significance levels,
+     * concurrently.
+     * @param significances
+     * @return The compiled models, in the order of the levels.
+     */
+    public List<CompiledTree> compile(double... significances) {
+        return DoubleStream.of(significances).parallel().mapToObj(this::compile)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the number of nodes the tree would have left after pruning at the
+     * given significance level, without compiling it.
+     * @param significance Significance level; 0 leaves the tree unpruned
+     * @return Node count.
+     */
+    public int size(double significance) {
+        if (significance == 0)
+            return nodes.length;
+
+        var collapsed = collapse(significance);
+        int size = 0;
+        var stack = new ArrayDeque<Integer>();
+        stack.push(0);
+        while (!stack.isEmpty()) {
+            int i = stack.pop();
+            ++size;
+            if (firstChild[i] != -1 && !collapsed.containsKey(nodes[i])) {
+                for (int k = 0; k < arity[i]; ++k)
+                    stack.push(firstChild[i] + k);
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Decides, bottom-up, which inner nodes get pruned at the given level and
+     * what they then classify as; this mirrors {@link DecisionTree#prune()}.
+     */
+    private IdentityHashMap<DecisionTree, Boolean> collapse(double significance) {
+        var collapsed = new IdentityHashMap<DecisionTree, Boolean>();
+        var leaf = new boolean[nodes.length]; // a leaf after pruning
+        var positive = new boolean[nodes.length]; // classification of such leaves
+        for (int i = nodes.length - 1; i >= 0; --i) { // children first
+            if (firstChild[i] == -1) {
+                leaf[i] = true;
+                positive[i] = nodes[i].rootAttribute.equals("+");
+                continue;
+            }
+
+            boolean childrenPruned = true;
+            int nPluses = 0;
+            for (int k = firstChild[i]; k < firstChild[i] + arity[i]; ++k) {
+                childrenPruned &= leaf[k];
+                if (positive[k])
+                    ++nPluses;
+            }
+
+            if (childrenPruned && statistic[i]
+                    < DecisionTree.chiSquaredQuantile(significance, degreesOfFreedom[i])) {
+                leaf[i] = true;
+                positive[i] = Helpers.majority(nPluses, arity[i] - nPluses, nodes[i].seed);
+                collapsed.put(nodes[i], positive[i]);
+            }
+        }
+
+        return collapsed;
+    }
+}
@@ -0,0 +1,219 @@
+package com.mraguzin.decisiontrees;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable summary of a stream of numbers which answers rank and quantile
+ * queries to within a fixed fraction of the stream's length, in memory that
+ * grows only logarithmically with it. It is a stack of compactors (Manku,
+ * Rajagopalan and Lindsay, 1998; Karnin, Lang and Liberty, 2016): level h
+ * holds items of weight 2<sup>h</sup>, and once a level fills up it is
+ * sorted and every other item is promoted to the next level. Which half is
+ * promoted alternates, so the sketch is deterministic: the same values added
+ * and merged in the same order always give the same summary.
+ * <p>
+ * Every compaction at level h misplaces the rank of any value by at most
+ * 2<sup>h</sup>. With a capacity of k items per level there are at most
+ * n/(k2<sup>h</sup>) of those, so each level adds at most n/k to the error;
+ * the capacity is chosen so that all the levels a stream of up to
+ * 2<sup>31</sup> values can need stay within the requested bound.
+ * @author mraguzin
+ */
+public class QuantileSketch {
+    private static final int MAX_LEVELS = 32;
+
+    private final double epsilon;
+    private final int capacity;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private boolean[] promoteOdd = new boolean[1]; // which half the next
+    // compaction of a level promotes
+    private long count;
+
+    /**
+     * @param epsilon Bound on the rank error, as a fraction of the number of
+     * values summarised; between 0 and 1
+     */
+    public QuantileSketch(double epsilon) {
+        if (!(epsilon > 0 && epsilon < 1))
+            throw new IllegalArgumentException("The error bound has to be between 0 and 1");
+        this.epsilon = epsilon;
+        capacity = 2 * (int)Math.ceil(MAX_LEVELS / epsilon / 2); // even, so
+        // that a compaction halves a level exactly
+        levels[0] = new double[capacity];
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * Gets the number of values summarised.
+     * @return Count.
+     */
+    public long count() {
+        return count;
+    }
+
+    public void add(double value) {
+        if (sizes[0] == capacity)
+            compact(0);
+        levels[0][sizes[0]++] = value;
+        ++count;
+    }
+
+    /**
+     * Adds all the values summarised by another sketch, which has to have
+     * the same error bound, to this one. The error bound still holds for the
+     * combined stream.
+     * @param other
+     */
+    public void merge(QuantileSketch other) {
+        if (other.capacity != capacity)
+            throw new IllegalArgumentException("Only sketches with the same error bound "
+                    + "can be merged");
+
+        for (int h = 0; h < other.levels.length; ++h) {
+            for (int i = 0; i < other.sizes[h]; ++i) {
+                ensureLevel(h);
+                if (sizes[h] == capacity)
+                    compact(h);
+                levels[h][sizes[h]++] = other.levels[h][i];
+            }
+        }
+        count += other.count;
+    }
+
+    private void ensureLevel(int h) {
+        if (h < levels.length)
+            return;
+
+        levels = Arrays.copyOf(levels, h + 1);
+        sizes = Arrays.copyOf(sizes, h + 1);
+        promoteOdd = Arrays.copyOf(promoteOdd, h + 1);
+        levels[h] = new double[capacity];
+    }
+
+    private void compact(int h) {
+        ensureLevel(h + 1);
+        int size = sizes[h];
+        int even = size & ~1; // an odd item out stays, keeping the weights exact
+        if (sizes[h + 1] + even / 2 > capacity)
+            compact(h + 1); // make room first
+
+        var level = levels[h];
+        Arrays.sort(level, 0, size);
+        for (int i = promoteOdd[h] ? 1 : 0; i < even; i += 2)
+            levels[h + 1][sizes[h + 1]++] = level[i];
+        promoteOdd[h] = !promoteOdd[h];
+        if (size > even)
+            level[0] = level[even];
+        sizes[h] = size - even;
+    }
+
+    /**
+     * Gets the number of items retained, over all the levels.
+     * @return Item count.
+     */
+    int retained() {
+        int retained = 0;
+        for (int size : sizes)
+            retained += size;
+        return retained;
+    }
+
+    /**
+     * Merges the items retained by several sketches into a single ascending
+     * sequence of distinct values, along with the weight every sketch gives to
+     * each of them. The weights of a sketch add up to its {@link #count()}.
+     * @param sketches
+     * @param values Output; needs room for all the retained items
+     * @param weights Output, one array per sketch, each as long as values
+     * @return Number of distinct values.
+     */
+    static int distinct(QuantileSketch[] sketches, double[] values, long[][] weights) {
+        int nRuns = 0;
+        for (var sketch : sketches)
+            nRuns += sketch.levels.length;
+        var runs = new double[nRuns][]; // every level, sorted, is a run of
+        // items of equal weight
+        var runSize = new int[nRuns];
+        var runSketch = new int[nRuns];
+        var runWeight = new long[nRuns];
+        int r = 0;
+        for (int s = 0; s < sketches.length; ++s) {
+            var sketch = sketches[s];
+            for (int h = 0; h < sketch.levels.length; ++h, ++r) {
+                runs[r] = Arrays.copyOf(sketch.levels[h], sketch.sizes[h]);
+                Arrays.sort(runs[r]);
+                runSize[r] = sketch.sizes[h];
+                runSketch[r] = s;
+                runWeight[r] = 1L << h;
+            }
+        }
+
+        var head = new int[nRuns];
+        int n = 0;
+        while (true) { // k-way merge; there are only a few dozen runs
+            int min = -1;
+            for (r = 0; r < nRuns; ++r) {
+                if (head[r] < runSize[r] && (min == -1
+                        || Double.compare(runs[r][head[r]], runs[min][head[min]]) < 0))
+                    min = r;
+            }
+            if (min == -1)
+                return n;
+
+            double value = runs[min][head[min]++];
+            if (n == 0 || Double.compare(values[n - 1], value) != 0) {
+                values[n] = value;
+                for (var w : weights)
+                    w[n] = 0;
+                ++n;
+            }
+            weights[runSketch[min]][n - 1] += runWeight[min];
+        }
+    }
+
+    /**
+     * Estimates the number of summarised values not exceeding the given one.
+     * @param value
+     * @return Rank, within {@code epsilon * count()} of the true one.
+     */
+    public long rank(double value) {
+        long rank = 0;
+        for (int h = 0; h < levels.length; ++h) {
+            for (int i = 0; i < sizes[h]; ++i) {
+                if (levels[h][i] <= value)
+                    rank += 1L << h;
+            }
+        }
+
+        return rank;
+    }
+
+    /**
+     * Estimates the value of the given rank.
+     * @param q Rank as a fraction of {@link #count()}, between 0 and 1
+     * @return The smallest retained value whose estimated rank reaches q;
+     * NaN if the sketch is empty.
+     */
+    public double quantile(double q) {
+        int n = retained();
+        if (n == 0)
+            return Double.NaN;
+
+        var values = new double[n];
+        var weights = new long[1][n];
+        n = distinct(new QuantileSketch[] {this}, values, weights);
+        long target = (long)Math.ceil(q * count);
+        long rank = 0;
+        for (int i = 0; i < n; ++i) {
+            rank += weights[0][i];
+            if (rank >= target)
+                return values[i];
+        }
+
+        return values[n - 1];
+    }
+}
@@ -0,0 +1,171 @@
+package com.mraguzin.decisiontrees;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A bagged ensemble of depth-first trees (a random forest). Every tree is
+ * grown from its own bootstrap sample of the rows, scoring a random subset of
+ * the candidate attributes at every node, and the ensemble predicts by
+ * majority vote. All the trees share a single read-only {@link Dataset} and
+ * {@link AttributeSet}; a bootstrap sample is just an array of row indices.
+ * <p>
+ * The trees are built concurrently, one task per tree, on the build pool of
+ * the options (or the common pool); a single tree is grown sequentially.
+ * Given the same seed the forest is always the same. Once built, the trees
+ * are kept in their compiled form only, so a forest is a {@link TreeModel}
+ * and {@link BatchPredictor} scores batches with it in parallel.
+ * @author mraguzin
+ */
+public class RandomForest extends TreeModel {
+    private final CompiledTree[] trees;
+    private final long seed;
+    private final double outOfBagAccuracy;
+
+    /**
+     * Builds a forest with the default number of sampled attributes per node,
+     * the square root of the attribute count.
+     * @param data
+     * @param nTrees
+     * @param pvalueCutoff Significance level for pruning the trees; 0 leaves
+     * them unpruned, as is usual for forests
+     * @param options Seed, build pool, metrics and the number of sampled
+     * attributes; the other parallel settings are ignored
+     */
+    public RandomForest(Dataset data, int nTrees, double pvalueCutoff, BuildOptions options) {
+        this(data, nTrees, pvalueCutoff, options, new AttributeSet(data, options));
+    }
+
+    private RandomForest(Dataset data, int nTrees, double pvalueCutoff, BuildOptions options,
+            AttributeSet attributeValues) {
+        super(CompiledTree.attributesOf(data),
+                CompiledTree.dictionariesOf(data, attributeValues)); // the same
+        // for every tree, since they all share the attribute values
+        if (nTrees < 1)
+            throw new IllegalArgumentException("A forest needs at least one tree");
+
+        seed = options.getSeed();
+        int sampled = options.getSampledAttributes();
+        if (sampled == 0)
+            sampled = Math.max(1, (int)Math.round(Math.sqrt(data.attributeCount())));
+
+        var treeOptions = new BuildOptions(options).sampleAttributes(sampled);
+        treeOptions.scoreInParallel(null).buildInParallel(null); // tree-level
+        // parallelism only
+        var pool = options.getBuildPool() != null ? options.getBuildPool()
+                : ForkJoinPool.commonPool();
+
+        int size = data.size();
+        trees = new CompiledTree[nTrees];
+        var inBag = new BitSet[nTrees];
+        pool.submit(() -> IntStream.range(0, nTrees).parallel().forEach(t -> {
+            var random = new SplittableRandom(Helpers.mix(seed, t));
+            var rows = new int[size];
+            inBag[t] = new BitSet(size);
+            for (int i = 0; i < size; ++i) {
+                rows[i] = random.nextInt(size);
+                inBag[t].set(rows[i]);
+            }
+
+            var tree = new DepthFirstTree(data, attributeValues, rows, pvalueCutoff,
+                    new BuildOptions(treeOptions).setSeed(random.nextLong()));
+            if (pvalueCutoff > 0)
+                tree.prune();
+            trees[t] = tree.compile();
+        })).join();
+
+        outOfBagAccuracy = scoreOutOfBag(data, inBag, pool);
+    }
+
+    /**
+     * Estimates the accuracy on unseen examples by letting every row be voted
+     * on by the trees whose bootstrap samples missed it.
+     */
+    private double scoreOutOfBag(Dataset data, BitSet[] inBag, ForkJoinPool pool) {
+        int nAttributes = data.attributeCount();
+        long[] tallies = pool.submit(() -> IntStream.range(0, data.size()).parallel()
+                .mapToObj(row -> {
+                    var features = new double[nAttributes];
+                    for (int i = 0; i < nAttributes; ++i) {
+                        features[i] = data.isNumeric(i) ? data.numbers(i).get(row)
+                                : data.codes(i).get(row);
+                    }
+
+                    int votes = 0;
+                    int voters = 0;
+                    for (int t = 0; t < trees.length; ++t) {
+                        if (!inBag[t].get(row)) {
+                            ++voters;
+                            if (trees[t].predict(features))
+                                ++votes;
+                        }
+                    }
+
+                    if (voters == 0)
+                        return new long[] {0, 0};
+                    boolean prediction = Helpers.majority(votes, voters - votes,
+                            Helpers.mix(seed, row));
+                    return new long[] {prediction == data.isPositive(row) ? 1 : 0, 1};
+                })
+                .reduce(new long[] {0, 0}, (a, b) -> new long[] {a[0] + b[0], a[1] + b[1]}))
+                .join();
+
+        return tallies[1] == 0 ? Double.NaN : (double)tallies[0] / tallies[1];
+    }
+
+    /**
+     * Predicts by majority vote of the trees; a tied vote is broken by a coin
+     * flip seeded from the forest's seed.
+     */
+    @Override
+    public boolean predict(double[] features) {
+        int votes = 0;
+        for (var tree : trees) {
+            if (tree.predict(features))
+                ++votes;
+        }
+
+        return Helpers.majority(votes, trees.length - votes, seed);
+    }
+
+    /**
+     * Scores every example of a batch in parallel, see
+     * {@link BatchPredictor#predict(Dataset)}.
+     * @param batch
+     * @return The predictions, one per row.
+     */
+    public boolean[] predict(Dataset batch) {
+        return new BatchPredictor(this).predict(batch);
+    }
+
+    /**
+     * Gets the out-of-bag accuracy estimate: every training row is predicted
+     * by the trees which did not train on it.
+     * @return Accuracy, or NaN if every row was in every bootstrap sample.
+     */
+    public double getOutOfBagAccuracy() {
+        return outOfBagAccuracy;
+    }
+
+    public int getTreeCount() {
+        return trees.length;
+    }
+
+    public CompiledTree getTree(int index) {
+        return trees[index];
+    }
+
+    /**
+     * Gets the total number of nodes of all the trees.
+     * @return Node count.
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (var tree : trees)
+            size += tree.size();
+        return size;
+    }
+}
@@ -0,0 +1,124 @@
+package com.mraguzin.decisiontrees;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+/**
+ * Grows one dimension of the synthetic data at a time (rows, categorical
+ * attributes, their cardinality, numerical attributes, noise and the depth
+ * of the planted rule), keeping the others at a baseline, and records how
+ * training reacts: build and prune times, peak heap, tree sizes and training
+ * accuracy. Every measurement becomes a row of the output csv, so that the
+ * complexity cliffs can be plotted.
+ * <p>
+ * Usage: ScalingHarness izlaz.csv [max_rows [seed]]
+ * @author mraguzin
+ */
+public class ScalingHarness {
+    private final CSVPrinter printer;
+    private final long maxRows;
+    private final long seed;
+
+    private ScalingHarness(CSVPrinter printer, long maxRows, long seed) {
+        this.printer = printer;
+        this.maxRows = maxRows;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.out.println("Upotreba: ScalingHarness izlaz.csv [max_redaka [seed]]");
+            return;
+        }
+
+        long maxRows = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        try (var writer = Files.newBufferedWriter(Path.of(args[0]), StandardCharsets.UTF_8);
+                var printer = CSVFormat.DEFAULT.print(writer)) {
+            printer.printRecord("dimension", "value", "rows", "attributes", "build_ms",
+                    "prune_ms", "peak_heap_mb", "nodes", "pruned_nodes", "accuracy");
+            new ScalingHarness(printer, maxRows, seed).run();
+        }
+    }
+
+    private SyntheticData baseline() {
+        return new SyntheticData().setRows(Math.min(10000, maxRows)).setSeed(seed);
+    }
+
+    private void run() throws IOException {
+        for (long rows = 1000; rows <= maxRows; rows *= 10)
+            measure("rows", rows, baseline().setRows(rows));
+        for (int n : new int[] {1, 2, 4, 8, 16, 32}) {
+            var cardinalities = new int[n];
+            Arrays.fill(cardinalities, 4);
+            measure("categorical", n, baseline().setCategorical(cardinalities));
+        }
+        for (int cardinality : new int[] {2, 4, 16, 64, 256, 1024})
+            measure("cardinality", cardinality,
+                    baseline().setCategorical(cardinality, cardinality, cardinality, cardinality));
+        for (int n : new int[] {0, 1, 2, 4, 8, 16}) {
+            var distributions = new SyntheticData.Distribution[n];
+            Arrays.fill(distributions, SyntheticData.Distribution.NORMAL);
+            measure("numeric", n, baseline().setNumeric(distributions));
+        }
+        for (double noise : new double[] {0, 0.05, 0.1, 0.2, 0.3, 0.5})
+            measure("noise", noise, baseline().setNoise(noise));
+        for (int depth : new int[] {1, 2, 3, 4, 6, 8})
+            measure("rule_depth", depth, baseline().setRuleDepth(depth));
+    }
+
+    private void measure(String dimension, Object value, SyntheticData settings)
+            throws IOException {
+        var data = settings.dataset();
+        System.gc();
+        var pools = ManagementFactory.getMemoryPoolMXBeans();
+        for (var pool : pools)
+            pool.resetPeakUsage();
+
+        long start = System.nanoTime();
+        var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(seed));
+        long built = System.nanoTime();
+        long peak = sumPeaks(pools);
+        int nodes = tree.compile().size();
+        long pruneStart = System.nanoTime();
+        tree.prune();
+        long pruned = System.nanoTime();
+
+        var compiled = tree.compile();
+        var predictions = new BatchPredictor(compiled).predict(data);
+        int correct = 0;
+        for (int row = 0; row < predictions.length; ++row) {
+            if (predictions[row] == data.isPositive(row))
+                ++correct;
+        }
+
+        printer.printRecord(dimension, value, data.size(), data.attributeCount(),
+                (built - start) / 1e6, (pruned - pruneStart) / 1e6, peak / 1048576.0,
+                nodes, compiled.size(), (double)correct / data.size());
+        printer.flush();
+        System.out.println(dimension + "=" + value + " done");
+    }
+
+    /**
+     * Sums the peak usage of all the heap pools. The pools peak at different
+     * moments, so this is an upper bound on the true peak.
+     */
+    private static long sumPeaks(Iterable<MemoryPoolMXBean> pools) {
+        long sum = 0;
+        for (var pool : pools) {
+            var peak = pool.getPeakUsage();
+            if (pool.getType() == MemoryType.HEAP && peak != null)
+                sum += peak.getUsed();
+        }
+
+        return sum;
+    }
+}
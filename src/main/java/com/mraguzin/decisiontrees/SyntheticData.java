@@ -0,0 +1,266 @@
+package com.mraguzin.decisiontrees;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.apache.commons.csv.CSVFormat;
+
+/**
+ * Deterministic generator of synthetic classification data of any size. The
+ * attributes are independent: categorical ones take one of their values
+ * uniformly, numerical ones follow a chosen distribution. The class follows a
+ * planted rule, itself a random decision tree of a given depth over the
+ * attributes, and every label is then flipped with the noise probability.
+ * Given the same settings and seed, the generated rows are always the same,
+ * whether they are written to a csv or encoded into a {@link Dataset} right
+ * away. All setters return this object, so that they can be chained.
+ * <p>
+ * Categorical attribute i is named c<i>i</i> and takes the values
+ * v0, v1, ...; numerical attribute i is named x<i>i</i>. The class attribute
+ * is "class", with the values yes and no.
+ * @author mraguzin
+ */
+public class SyntheticData {
+    public enum Distribution {
+        UNIFORM, // on [0, 100)
+        NORMAL, // mean 50, standard deviation 15
+        EXPONENTIAL // mean 10
+    }
+
+    private long rows = 10000;
+    private int[] cardinalities = {4, 4, 4, 4};
+    private Distribution[] distributions = {Distribution.UNIFORM, Distribution.NORMAL,
+        Distribution.NORMAL, Distribution.EXPONENTIAL};
+    private double noise = 0.05;
+    private int ruleDepth = 3;
+    private long seed = 1;
+
+    public SyntheticData setRows(long rows) {
+        this.rows = rows;
+        return this;
+    }
+
+    /**
+     * Sets the categorical attributes, given by their numbers of values.
+     * @param cardinalities
+     * @return This object.
+     */
+    public SyntheticData setCategorical(int... cardinalities) {
+        for (int cardinality : cardinalities) {
+            if (cardinality < 1)
+                throw new IllegalArgumentException("A cardinality has to be positive");
+        }
+        this.cardinalities = cardinalities.clone();
+        return this;
+    }
+
+    /**
+     * Sets the numerical attributes, given by their distributions.
+     * @param distributions
+     * @return This object.
+     */
+    public SyntheticData setNumeric(Distribution... distributions) {
+        this.distributions = distributions.clone();
+        return this;
+    }
+
+    /**
+     * Sets the probability of a label being flipped after the planted rule
+     * has decided it.
+     * @param noise
+     * @return This object.
+     */
+    public SyntheticData setNoise(double noise) {
+        this.noise = noise;
+        return this;
+    }
+
+    /**
+     * Sets the depth of the planted rule's tree; depth 0 makes the class a
+     * coin flip.
+     * @param depth
+     * @return This object.
+     */
+    public SyntheticData setRuleDepth(int depth) {
+        ruleDepth = depth;
+        return this;
+    }
+
+    public SyntheticData setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the attribute names: the categorical ones first, then the
+     * numerical ones.
+     * @return Attribute names, without the class.
+     */
+    public List<String> attributes() {
+        var names = new ArrayList<String>();
+        for (int i = 0; i < cardinalities.length; ++i)
+            names.add("c" + i);
+        for (int i = 0; i < distributions.length; ++i)
+            names.add("x" + i);
+        return names;
+    }
+
+    /**
+     * Generates the rows straight into an encoded dataset.
+     * @return The dataset.
+     */
+    public Dataset dataset() {
+        var builder = new Dataset.Builder(attributes(), "class");
+        generate((values, positive) -> builder.add(values, positive));
+        return builder.build();
+    }
+
+    /**
+     * Writes the rows into a UTF-8 csv file with a header, the class being
+     * in the last column. Memory use does not depend on the number of rows.
+     * @param file
+     * @throws IOException
+     */
+    public void write(Path file) throws IOException {
+        try (var writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                var printer = CSVFormat.DEFAULT.print(writer)) {
+            var header = new ArrayList<String>(attributes());
+            header.add("class");
+            printer.printRecord(header);
+
+            var record = new String[header.size()];
+            try {
+                generate((values, positive) -> {
+                    System.arraycopy(values, 0, record, 0, values.length);
+                    record[values.length] = positive ? "yes" : "no";
+                    try {
+                        printer.printRecord((Object[])record);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowSink { void accept(String[] values, boolean positive); }
+
+    private void generate(RowSink sink) {
+        int nCategorical = cardinalities.length;
+        int n = nCategorical + distributions.length;
+        var rule = Rule.plant(this, new SplittableRandom(Helpers.mix(seed, 0)), ruleDepth);
+        var random = new SplittableRandom(Helpers.mix(seed, 1));
+        var codes = new int[nCategorical];
+        var numbers = new double[distributions.length];
+        var values = new String[n];
+
+        for (long row = 0; row < rows; ++row) {
+            for (int i = 0; i < nCategorical; ++i) {
+                codes[i] = random.nextInt(cardinalities[i]);
+                values[i] = "v" + codes[i];
+            }
+            for (int i = 0; i < numbers.length; ++i) {
+                numbers[i] = draw(distributions[i], random);
+                values[nCategorical + i] = Double.toString(numbers[i]);
+            }
+
+            boolean positive = rule.classify(codes, numbers);
+            if (random.nextDouble() < noise)
+                positive = !positive;
+            sink.accept(values, positive);
+        }
+    }
+
+    /**
+     * Draws a value rounded to two decimals, as real measurements would be.
+     */
+    private static double draw(Distribution distribution, SplittableRandom random) {
+        double x;
+        switch (distribution) {
+            case NORMAL:
+                // Box-Muller, using 1-u to stay clear of log(0)
+                x = 50 + 15 * Math.sqrt(-2 * Math.log(1 - random.nextDouble()))
+                        * Math.cos(2 * Math.PI * random.nextDouble());
+                break;
+            case EXPONENTIAL:
+                x = -10 * Math.log(1 - random.nextDouble());
+                break;
+            default:
+                x = random.nextDouble(100);
+        }
+
+        return Math.round(x * 100) / 100.0;
+    }
+
+    /**
+     * A node of the planted rule. Inner nodes test an attribute: categorical
+     * ones for membership in a random subset of values, numerical ones against
+     * a threshold drawn from the attribute's own distribution.
+     */
+    private static class Rule {
+        int attribute = -1; // categorical index, or numerical index + nCategorical
+        boolean[] subset; // categorical test
+        double threshold; // numerical test
+        Rule inside; // taken when the test holds
+        Rule outside;
+        boolean label; // leaves only
+
+        static Rule plant(SyntheticData settings, SplittableRandom random, int depth) {
+            var node = new Rule();
+            int nCategorical = settings.cardinalities.length;
+            int n = nCategorical + settings.distributions.length;
+            if (depth == 0 || n == 0) {
+                node.label = random.nextBoolean();
+                return node;
+            }
+
+            node.attribute = random.nextInt(n);
+            if (node.attribute < nCategorical) {
+                int cardinality = settings.cardinalities[node.attribute];
+                node.subset = new boolean[cardinality];
+                for (int value = 0; value < cardinality; ++value)
+                    node.subset[value] = random.nextBoolean();
+            } else {
+                node.threshold = draw(settings.distributions[node.attribute - nCategorical],
+                        random);
+            }
+
+            node.inside = plant(settings, random, depth - 1);
+            node.outside = plant(settings, random, depth - 1);
+            if (depth == 1)
+                node.outside.label = !node.inside.label; // no pointless tests
+            return node;
+        }
+
+        boolean classify(int[] codes, double[] numbers) {
+            var node = this;
+            while (node.attribute != -1) {
+                boolean holds = node.subset != null ? node.subset[codes[node.attribute]]
+                        : numbers[node.attribute - codes.length] <= node.threshold;
+                node = holds ? node.inside : node.outside;
+            }
+
+            return node.label;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "rows=" + rows + " categorical=" + Arrays.toString(cardinalities)
+                + " numeric=" + Arrays.toString(distributions) + " noise=" + noise
+                + " ruleDepth=" + ruleDepth + " seed=" + seed;
+    }
+}
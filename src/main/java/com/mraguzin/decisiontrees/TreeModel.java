@@ -0,0 +1,98 @@
+package com.mraguzin.decisiontrees;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A trained decision tree ready for inference, whatever form its nodes are
+ * kept in. Examples are given as a double per attribute (in dataset column
+ * order): the raw value for numerical attributes and the dictionary code for
+ * categorical ones, see {@link #encode(String[], double[])}.
+ * @author mraguzin
+ */
+public abstract class TreeModel {
+    protected final String[] attributes; // input attributes, in column order
+    protected final List<Map<String, Integer>> dictionaries; // value -> code;
+    // null for numerical attributes
+
+    protected TreeModel(String[] attributes, List<Map<String, Integer>> dictionaries) {
+        this.attributes = attributes;
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * Predicts + or - for an encoded example.
+     * @param features One value per attribute, see {@link #encode(String[], double[])}
+     * @return Whether the example classifies as + (true) or - (false).
+     */
+    public abstract boolean predict(double[] features);
+
+    /**
+     * Gets the total number of nodes, inner ones and leaves.
+     * @return Node count.
+     */
+    public abstract int size();
+
+    /**
+     * Predicts + or - on the basis of the provided (attribute,value) pairs,
+     * given as a map.
+     * @param attributes
+     * @return Whether the example classifies as + (true) or - (false).
+     */
+    public boolean predict(Map<String, String> attributes) {
+        if (attributes.size() != this.attributes.length) {
+            throw new IllegalArgumentException("Length of example record has "
+                    + "to be equal to the number of training attributes");
+        }
+
+        var values = new String[this.attributes.length];
+        for (int i = 0; i < values.length; ++i)
+            values[i] = attributes.get(this.attributes[i]);
+
+        var features = new double[values.length];
+        encode(values, features);
+        return predict(features);
+    }
+
+    /**
+     * Encodes an example given as strings into the array form expected by
+     * {@link #predict(double[])}. Categorical values never seen in training
+     * are encoded as -1.
+     * @param values One value per attribute, in column order
+     * @param features Output array of the same length
+     */
+    public void encode(String[] values, double[] features) {
+        for (int i = 0; i < values.length; ++i) {
+            var dictionary = dictionaries.get(i);
+            if (dictionary == null) {
+                features[i] = Double.parseDouble(values[i]);
+            } else {
+                Integer code = dictionary.get(values[i]);
+                features[i] = code == null ? -1 : code;
+            }
+        }
+    }
+
+    /**
+     * Gets the code of a single categorical value.
+     * @param attribute
+     * @param value
+     * @return The code or -1 if the value was never seen in training.
+     */
+    public int code(int attribute, String value) {
+        Integer code = dictionaries.get(attribute).get(value);
+        return code == null ? -1 : code;
+    }
+
+    public int attributeCount() {
+        return attributes.length;
+    }
+
+    public String attribute(int index) {
+        return attributes[index];
+    }
+
+    public boolean isNumeric(int attribute) {
+        return dictionaries.get(attribute) == null;
+    }
+}
@@ -0,0 +1,65 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class AttributeSetTest {
+    @Test
+    void findsTheBinsOfALinearScan() {
+        double[] cuts = {-7, -1.5, 0, 0, 2, 3.25, 10, 1e9};
+        double[] values = {Double.NEGATIVE_INFINITY, -100, -7, -6.9, -1.5, -0.0, 0, 1e-9,
+            2, 3, 3.25, 9.99, 10, 11, 1e9, 2e9, Double.POSITIVE_INFINITY, Double.NaN};
+        for (int from = 0; from < cuts.length; ++from) {
+            for (int count = 0; from + count <= cuts.length; ++count) {
+                for (double value : values) {
+                    int expected = 0;
+                    while (expected < count && !(value <= cuts[from + expected]))
+                        ++expected;
+                    assertEquals(expected, AttributeSet.findBin(cuts, from, count, value),
+                            value + " in " + count + " cuts from " + from);
+                }
+            }
+        }
+    }
+
+    @Test
+    void encodesTheTrainingValuesAsTheirCodes() {
+        var data = TestData.synthetic(20000, 3);
+        var attributeValues = new AttributeSet(data);
+        var random = new SplittableRandom(1);
+        for (int i = 0; i < data.attributeCount(); ++i) {
+            var codes = attributeValues.codes(i);
+            for (int n = 0; n < 1000; ++n) {
+                int row = random.nextInt(data.size());
+                var value = TestData.example(data, row).get(data.attribute(i));
+                assertEquals(codes.get(row), attributeValues.encode(i, value), data.attribute(i));
+                assertEquals(attributeValues.getLabel(i, codes.get(row)),
+                        attributeValues.getLabel(data.attribute(i), value), data.attribute(i));
+            }
+        }
+    }
+
+    @Test
+    void labelsTheBinsByTheirBounds() {
+        var data = TestData.synthetic(20000, 3);
+        var attributeValues = new AttributeSet(data);
+        for (int i = 0; i < data.attributeCount(); ++i) {
+            if (!data.isNumeric(i))
+                continue;
+            var cuts = attributeValues.getCutPoints(i);
+            int last = attributeValues.size(i) - 1;
+            assertEquals(cuts.length, last);
+            assertTrue(attributeValues.getLabel(i, 0).startsWith("≤"));
+            if (last > 0) {
+                assertTrue(attributeValues.getLabel(i, last).startsWith(">"));
+                assertEquals(attributeValues.getLabel(i, 0),
+                        attributeValues.getLabel(data.attribute(i), cuts[0]));
+                assertEquals(attributeValues.getLabel(i, last), attributeValues.getLabel(
+                        data.attribute(i), Math.nextUp(cuts[last - 1])));
+            }
+        }
+    }
+}
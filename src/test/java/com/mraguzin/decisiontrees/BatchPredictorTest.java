@@ -0,0 +1,131 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchPredictorTest {
+    @TempDir
+    Path dir;
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutDown() {
+        pool.shutdown();
+    }
+
+    private static CompiledTree small() {
+        var data = TestData.build(List.of("a", "x"), new String[][] {
+            {"p", "1"}, {"q", "1"}, {"p", "5"}, {"q", "5"}},
+                new boolean[] {true, false, true, false});
+        return new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1)).compile();
+    }
+
+    @Test
+    void copiesTheInputThrough() throws IOException {
+        var output = new StringWriter();
+        long scored = new BatchPredictor(small(), pool, 16).predict(new StringReader(
+                "x,id,a,class\n1,\"one, two\",p,yes\n5,3,q,no\n"), output);
+        assertEquals(2, scored);
+        assertEquals("x,id,a,class,prediction\r\n1,\"one, two\",p,yes,+\r\n5,3,q,no,-\r\n",
+                output.toString());
+    }
+
+    @Test
+    void predictsLikeTheCompiledTreeAcrossChunks() throws IOException {
+        var file = dir.resolve("synthetic.csv");
+        new SyntheticData().setRows(5000).setSeed(3).write(file);
+        var data = TestData.load(file);
+        var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1)).compile();
+        var input = Files.readString(file);
+
+        // chunks of a record, across slices, a slice and a half, and all at once
+        for (int chunkSize : new int[] {1, 7, 1024, 1536, 5000, 65536}) {
+            var output = new StringWriter();
+            assertEquals(data.size(), new BatchPredictor(tree, pool, chunkSize)
+                    .predict(new StringReader(input), output));
+            var records = parse(output.toString());
+            assertEquals(data.size(), records.size());
+            for (int row = 0; row < data.size(); ++row) {
+                boolean expected = tree.predict(TestData.features(data, row));
+                assertEquals(expected ? "+" : "-", records.get(row).get("prediction"),
+                        "row " + row + " of chunks of " + chunkSize);
+            }
+        }
+    }
+
+    private static List<CSVRecord> parse(String csv) throws IOException {
+        return CsvLoader.WITH_HEADER.parse(new StringReader(csv)).getRecords();
+    }
+
+    @Test
+    void answersUnknownValuesWithTheMajority() throws IOException {
+        var tree = small();
+        var output = new StringWriter();
+        new BatchPredictor(tree, pool, 16).predict(new StringReader("a,x\nr,1\n"), output);
+        boolean expected = tree.predict(new double[] {-1, 1}); // encoded as -1
+        assertEquals(expected ? "+" : "-", parse(output.toString()).get(0).get("prediction"));
+
+        var batch = TestData.build(List.of("a", "x"), new String[][] {{"r", "1"}},
+                new boolean[] {true});
+        assertEquals(expected, new BatchPredictor(tree, pool, 16).predict(batch)[0]);
+    }
+
+    @Test
+    void rejectsInputWithoutTheAttributes() {
+        var predictor = new BatchPredictor(small(), pool, 16);
+        assertThrows(IllegalArgumentException.class, () -> predictor.predict(
+                new StringReader("a,y\np,1\n"), new StringWriter()));
+        assertThrows(IllegalArgumentException.class, () -> predictor.predict(
+                new StringReader("a,x\np,many\n"), new StringWriter()));
+
+        assertThrows(IllegalArgumentException.class, () -> predictor.predict(
+                TestData.build(List.of("a"), new String[][] {{"p"}}, new boolean[] {true})));
+        assertThrows(IllegalArgumentException.class, () -> predictor.predict(
+                TestData.build(List.of("a", "x"), new String[][] {{"p", "many"}},
+                        new boolean[] {true})));
+    }
+
+    @Test
+    void translatesTheDictionariesOfABatch() {
+        var data = TestData.synthetic(5000, 3);
+        var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1)).compile();
+
+        // the rows and columns reversed, so that the codes come out different
+        var attributes = new ArrayList<String>();
+        for (int i = 0; i < data.attributeCount(); ++i)
+            attributes.add(data.attribute(i));
+        Collections.reverse(attributes);
+        var rows = new String[data.size()][];
+        var classes = new boolean[data.size()];
+        for (int row = 0; row < data.size(); ++row) {
+            var example = TestData.example(data, data.size() - 1 - row);
+            rows[row] = new String[attributes.size()];
+            for (int i = 0; i < rows[row].length; ++i)
+                rows[row][i] = example.get(attributes.get(i));
+            classes[row] = data.isPositive(data.size() - 1 - row);
+        }
+        var batch = TestData.build(attributes, rows, classes);
+        assertNotEquals(data.dictionary(0), batch.dictionary(batch.indexOf(data.attribute(0))));
+
+        var predictions = new BatchPredictor(tree, pool, 16).predict(batch);
+        for (int row = 0; row < data.size(); ++row) {
+            assertEquals(tree.predict(TestData.features(data, data.size() - 1 - row)),
+                    predictions[row], "row " + row);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BreadthFirstTreeTest {
+    private static void assertSameAsDepthFirst(Dataset data, BuildOptions options) {
+        var depthFirst = new DepthFirstTree(data, 0.05, new BuildOptions(options));
+        var breadthFirst = new BreadthFirstTree(data, 0.05, new BuildOptions(options));
+        assertEquals(TestData.describe(depthFirst), TestData.describe(breadthFirst));
+        assertArrayEquals(depthFirst.getBranchCounts(), breadthFirst.getBranchCounts());
+
+        depthFirst.prune();
+        breadthFirst.prune();
+        assertEquals(TestData.describe(depthFirst), TestData.describe(breadthFirst));
+    }
+
+    @Test
+    void choosesTheSameSplitsAsTheDepthFirstBuilder() {
+        for (long seed = 1; seed <= 3; ++seed) {
+            var options = new BuildOptions().setSeed(seed);
+            assertSameAsDepthFirst(TestData.load(TestData.RESTAURANTS), options);
+            assertSameAsDepthFirst(TestData.load(TestData.JOBS), options);
+            assertSameAsDepthFirst(TestData.synthetic(20000, seed), options);
+        }
+    }
+
+    @Test
+    void growsWideLevelsInSeveralPasses() {
+        var data = new SyntheticData().setRows(20000).setCategorical(2, 3, 40, 5)
+                .setNoise(0.2).setSeed(4).dataset();
+        var options = new BuildOptions().setSeed(2).setHistogramBudget(1); // one
+        // node per pass
+        assertSameAsDepthFirst(data, options);
+        assertSameAsDepthFirst(data, new BuildOptions(options).setHistogramBudget(4096));
+    }
+
+    @Test
+    void handlesTheEdgeCases() {
+        var empty = new Dataset.Builder(List.of("a"), "class").build();
+        assertEquals(0, new BreadthFirstTree(empty, 0.05).children.length);
+
+        var pure = TestData.build(List.of("a"), new String[][] {{"x"}, {"y"}},
+                new boolean[] {false, false});
+        var leaf = new BreadthFirstTree(pure, 0.05);
+        assertEquals("-", leaf.rootAttribute);
+        assertEquals(0, leaf.children.length);
+    }
+}
@@ -0,0 +1,109 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ColumnStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackWhatItWrote() throws IOException {
+        var file = dir.resolve("data.dtc");
+        for (var data : List.of(TestData.load(TestData.RESTAURANTS),
+                TestData.load(TestData.JOBS), TestData.synthetic(20001, 3))) {
+            ColumnStore.write(data, file);
+            assertTrue(ColumnStore.isColumnStore(file));
+            var read = ColumnStore.read(file);
+            TestData.assertSameData(data, read);
+            assertEquals(TestData.describe(new DepthFirstTree(data, 0.05,
+                    new BuildOptions().setSeed(1))), TestData.describe(new DepthFirstTree(read,
+                    0.05, new BuildOptions().setSeed(1))));
+        }
+    }
+
+    @Test
+    void mapsTheColumns() throws IOException {
+        var data = TestData.synthetic(5000, 3);
+        var file = dir.resolve("data.dtc");
+        ColumnStore.write(data, file);
+        var read = ColumnStore.read(file);
+        for (int i = 0; i < read.attributeCount(); ++i) {
+            var column = read.isNumeric(i) ? read.numbers(i) : read.codes(i);
+            assertTrue(column.isDirect(), read.attribute(i));
+            assertTrue(column.isReadOnly(), read.attribute(i));
+        }
+    }
+
+    @Test
+    void readsAnEmptyDataset() throws IOException {
+        var data = new Dataset.Builder(List.of("a", "b"), "class").build();
+        var file = dir.resolve("empty.dtc");
+        ColumnStore.write(data, file);
+        TestData.assertSameData(data, ColumnStore.read(file));
+    }
+
+    @Test
+    void rejectsTruncatedFiles() throws IOException {
+        var file = dir.resolve("data.dtc");
+        ColumnStore.write(TestData.load(TestData.JOBS), file);
+        var bytes = Files.readAllBytes(file);
+        for (int length : new int[] {0, 3, 15, 40, bytes.length / 2, bytes.length - 1}) {
+            var truncated = dir.resolve("truncated" + length + ".dtc");
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> ColumnStore.read(truncated),
+                    length + " bytes");
+        }
+    }
+
+    @Test
+    void rejectsCodesOutsideTheDictionary() throws IOException {
+        var data = TestData.build(List.of("a"), new String[][] {{"p"}, {"q"}},
+                new boolean[] {true, false});
+        var file = dir.resolve("data.dtc");
+        ColumnStore.write(data, file);
+        var bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        int columns = (int)bytes.getLong(8); // where the code column starts
+        Files.write(file, bytes.putInt(columns + Integer.BYTES, 2).array());
+        assertThrows(IOException.class, () -> ColumnStore.read(file));
+    }
+
+    @Test
+    void rejectsCorruptLengths() throws IOException {
+        var file = dir.resolve("data.dtc");
+        ColumnStore.write(TestData.load(TestData.JOBS), file);
+        var bytes = Files.readAllBytes(file);
+        int classLength = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt(24);
+        int name = 28 + classLength; // length of the first attribute's name
+        for (int position : new int[] {20, 24, name}) {
+            for (int value : new int[] {-1, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                bytes.length}) {
+                var corrupt = ByteBuffer.wrap(bytes.clone()).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(position, value).array();
+                Files.write(file, corrupt);
+                assertThrows(IOException.class, () -> ColumnStore.read(file),
+                        value + " at byte " + position);
+            }
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        var csv = dir.resolve("data.csv");
+        Files.writeString(csv, "a,b,class\n1,2,yes\n");
+        assertFalse(ColumnStore.isColumnStore(csv));
+        assertThrows(IOException.class, () -> ColumnStore.read(csv));
+    }
+}
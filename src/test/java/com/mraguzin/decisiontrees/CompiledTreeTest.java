@@ -0,0 +1,84 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CompiledTreeTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void predictsLikeTheTree() {
+        for (var data : List.of(TestData.load(TestData.JOBS), TestData.synthetic(20000, 3))) {
+            var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1));
+            var compiled = tree.compile();
+            for (int row = 0; row < data.size(); ++row) {
+                assertEquals(tree.predict(TestData.example(data, row)),
+                        compiled.predict(TestData.features(data, row)), "row " + row);
+            }
+        }
+    }
+
+    @Test
+    void savesTheSameBytesEveryTime() throws IOException {
+        var data = TestData.synthetic(20000, 3);
+        var first = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1));
+        var second = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1));
+        first.compile().save(dir.resolve("first.dtm"));
+        second.compile().save(dir.resolve("second.dtm"));
+        first.compile().save(dir.resolve("again.dtm"));
+        var bytes = Files.readAllBytes(dir.resolve("first.dtm"));
+        assertArrayEquals(bytes, Files.readAllBytes(dir.resolve("second.dtm")));
+        assertArrayEquals(bytes, Files.readAllBytes(dir.resolve("again.dtm")));
+    }
+
+    @Test
+    void storesTheCutPointsOncePerAttribute() throws IOException {
+        var data = TestData.synthetic(20000, 3);
+        var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1));
+        var file = dir.resolve("tree.dtm");
+        tree.compile().save(file);
+
+        var split = new BitSet();
+        collectNumericSplits(tree, split);
+        int expected = 0;
+        for (int a = split.nextSetBit(0); a >= 0; a = split.nextSetBit(a + 1))
+            expected += tree.attributeValues.getCutPoints(a).length;
+        assertEquals(expected, thresholdCount(file));
+    }
+
+    private static void collectNumericSplits(DecisionTree node, BitSet split) {
+        if (node.attribute >= 0 && node.data.isNumeric(node.attribute))
+            split.set(node.attribute);
+        for (var child : node.children)
+            collectNumericSplits(child, split);
+    }
+
+    /**
+     * Reads the threshold table length from the header of a saved model.
+     */
+    private static int thresholdCount(Path file) throws IOException {
+        try (var in = new DataInputStream(Files.newInputStream(file))) {
+            in.readInt(); // magic
+            in.readInt(); // version
+            int attributes = in.readInt();
+            for (int i = 0; i < attributes; ++i) {
+                in.skipNBytes(in.readInt());
+                int values = in.readInt();
+                for (int code = 0; code < values; ++code)
+                    in.skipNBytes(in.readInt());
+            }
+            in.readInt(); // nodes
+            return in.readInt();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CrossValidationTest {
+    private static final double[] LEVELS = {0, 0.01, 0.05, 0.5};
+
+    @Test
+    void holdsEveryRowOutOnce() {
+        var data = TestData.synthetic(1003, 3);
+        var validation = new CrossValidation(data, 0.05, new BuildOptions().setSeed(1));
+        var order = validation.shuffledRows();
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(Helpers.range(data.size()), sorted);
+
+        int k = 7;
+        assertEquals(0, CrossValidation.foldStart(0, data.size(), k));
+        assertEquals(data.size(), CrossValidation.foldStart(k, data.size(), k));
+        for (int fold = 0; fold < k; ++fold) {
+            int from = CrossValidation.foldStart(fold, data.size(), k);
+            int to = CrossValidation.foldStart(fold + 1, data.size(), k);
+            var held = new BitSet();
+            for (int i = from; i < to; ++i)
+                held.set(order[i]);
+            var training = CrossValidation.trainingRows(order, fold, k, Integer.MAX_VALUE);
+            assertEquals(data.size() - (to - from), training.length);
+            for (int row : training)
+                assertFalse(held.get(row), "row " + row + " of fold " + fold);
+        }
+
+        var folds = validation.kFold(k);
+        assertEquals(k, folds.size());
+        int tested = 0;
+        for (int fold = 0; fold < k; ++fold) {
+            assertEquals(fold, folds.get(fold).getFold());
+            assertEquals(data.size() - folds.get(fold).getTestRows(),
+                    folds.get(fold).getTrainingRows());
+            tested += folds.get(fold).getTestRows();
+        }
+        assertEquals(data.size(), tested);
+    }
+
+    @Test
+    void isReproducibleGivenTheSeed() {
+        var data = TestData.synthetic(5000, 3);
+        var first = new CrossValidation(data, 0.05, new BuildOptions().setSeed(4)).kFold(5);
+        var second = new CrossValidation(data, 0.05, new BuildOptions().setSeed(4)).kFold(5);
+        for (int fold = 0; fold < 5; ++fold) {
+            assertEquals(first.get(fold).getCorrect(), second.get(fold).getCorrect());
+            assertEquals(first.get(fold).getNodes(), second.get(fold).getNodes());
+        }
+
+        assertArrayEquals(new CrossValidation(data, 0.05, new BuildOptions().setSeed(4))
+                .shuffledRows(), new CrossValidation(data, 0.05,
+                new BuildOptions().setSeed(4)).shuffledRows());
+        assertFalse(Arrays.equals(new CrossValidation(data, 0.05,
+                new BuildOptions().setSeed(4)).shuffledRows(), new CrossValidation(data,
+                0.05, new BuildOptions().setSeed(5)).shuffledRows()));
+    }
+
+    @Test
+    void growsTheTrainingSetsByPrefixes() {
+        var data = TestData.synthetic(1000, 3);
+        var validation = new CrossValidation(data, 0.05, new BuildOptions().setSeed(1));
+        var order = validation.shuffledRows();
+        int[] sizes = {10, 100, 500, 5000};
+        int k = 4;
+        for (int fold = 0; fold < k; ++fold) {
+            var largest = CrossValidation.trainingRows(order, fold, k, Integer.MAX_VALUE);
+            for (int size : sizes) {
+                var training = CrossValidation.trainingRows(order, fold, k, size);
+                assertEquals(Math.min(size, largest.length), training.length);
+                assertArrayEquals(Arrays.copyOf(largest, training.length), training);
+            }
+        }
+
+        var curve = validation.learningCurve(k, sizes);
+        assertEquals(sizes.length * k, curve.size());
+        for (int s = 0; s < sizes.length; ++s) {
+            for (int fold = 0; fold < k; ++fold) {
+                var result = curve.get(s * k + fold);
+                assertEquals(fold, result.getFold());
+                assertEquals(Math.min(sizes[s], data.size() - result.getTestRows()),
+                        result.getTrainingRows());
+            }
+        }
+    }
+
+    @Test
+    void sweepsLikePruningEachFold() {
+        for (var data : List.of(TestData.load(TestData.JOBS), TestData.synthetic(5000, 3))) {
+            var options = new BuildOptions().setSeed(2);
+            var validation = new CrossValidation(data, 0.05, options);
+            int k = 5;
+            var results = validation.sweep(k, LEVELS);
+            assertEquals(LEVELS.length * k, results.size());
+
+            var order = validation.shuffledRows();
+            for (int fold = 0; fold < k; ++fold) {
+                var training = CrossValidation.trainingRows(order, fold, k, Integer.MAX_VALUE);
+                int from = CrossValidation.foldStart(fold, data.size(), k);
+                int to = CrossValidation.foldStart(fold + 1, data.size(), k);
+                for (int level = 0; level < LEVELS.length; ++level) {
+                    var rows = training.clone(); // the build reorders them
+                    var tree = new DepthFirstTree(data, new AttributeSet(data, rows, options),
+                            rows, LEVELS[level], options);
+                    if (LEVELS[level] > 0) // 0 means no pruning
+                        tree.prune();
+                    var compiled = tree.compile();
+                    int correct = 0;
+                    for (int i = from; i < to; ++i) {
+                        if (compiled.predict(TestData.features(data, order[i]))
+                                == data.isPositive(order[i]))
+                            ++correct;
+                    }
+
+                    var result = results.get(level * k + fold);
+                    var message = "level " + LEVELS[level] + ", fold " + fold;
+                    assertEquals(fold, result.getFold(), message);
+                    assertEquals(LEVELS[level], result.getSignificance(), message);
+                    assertEquals(compiled.size(), result.getNodes(), message);
+                    assertEquals(correct, result.getCorrect(), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void rejectsImpossibleFoldCounts() {
+        var data = TestData.load(TestData.RESTAURANTS);
+        var validation = new CrossValidation(data, 0.05, new BuildOptions().setSeed(1));
+        assertThrows(IllegalArgumentException.class, () -> validation.kFold(1));
+        assertThrows(IllegalArgumentException.class, () -> validation.kFold(0));
+        assertThrows(IllegalArgumentException.class, () -> validation.kFold(data.size() + 1));
+        assertEquals(data.size(), validation.kFold(data.size()).size());
+    }
+}
@@ -0,0 +1,53 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CsvLoaderTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void loadsTheSameDatasetAsTheRecordAdapter() throws IOException {
+        for (var file : new Path[] {TestData.RESTAURANTS, TestData.JOBS}) {
+            TestData.assertSameData(TestData.load(file),
+                    CsvLoader.load(file, TestData::isPositive));
+        }
+    }
+
+    @Test
+    void takesTheClassFromANamedColumn() throws IOException {
+        var file = dir.resolve("named.csv");
+        Files.writeString(file, "label,a,x\nyes,p,1\nno,q,2\n", StandardCharsets.UTF_8);
+        var data = CsvLoader.load(file, "label", TestData::isPositive, StandardCharsets.UTF_8);
+        assertEquals("label", data.classAttribute());
+        assertEquals("a", data.attribute(0));
+        assertEquals(1, data.positives());
+        assertThrows(IllegalArgumentException.class, () -> CsvLoader.load(file, "missing",
+                TestData::isPositive, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void loadsAHeaderOnlyFileAsAnEmptyDataset() throws IOException {
+        var file = dir.resolve("empty.csv");
+        Files.writeString(file, "a,b,class\n", StandardCharsets.UTF_8);
+        var data = CsvLoader.load(file, TestData::isPositive);
+        assertEquals(0, data.size());
+        assertEquals(2, data.attributeCount());
+    }
+
+    @Test
+    void rejectsRecordsOfTheWrongLength() throws IOException {
+        var file = dir.resolve("ragged.csv");
+        Files.writeString(file, "a,b,class\np,1,yes\nq,no\n", StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class,
+                () -> CsvLoader.load(file, TestData::isPositive));
+    }
+}
@@ -0,0 +1,78 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class DatasetTest {
+    @Test
+    void encodesCategoricalValuesInFirstSeenOrder() {
+        var data = TestData.build(List.of("colour", "size"), new String[][] {
+            {"red", "1.5"}, {"blue", "2"}, {"red", "-3"}, {"green", "0"}},
+                new boolean[] {true, false, false, true});
+
+        assertFalse(data.isNumeric(0));
+        assertTrue(data.isNumeric(1));
+        assertEquals(List.of("red", "blue", "green"), data.dictionary(0));
+        assertEquals(List.of(), data.dictionary(1));
+        assertEquals(0, data.codes(0).get(2));
+        assertEquals(2, data.codes(0).get(3));
+        assertEquals(-3, data.numbers(1).get(2));
+        assertEquals(4, data.size());
+        assertEquals(2, data.positives());
+        assertEquals(2, data.negatives());
+        assertEquals(1, data.indexOf("size"));
+        assertEquals(-1, data.indexOf("class"));
+    }
+
+    @Test
+    void decidesColumnTypesFromTheFirstRow() {
+        var builder = new Dataset.Builder(List.of("a"), "class");
+        builder.add(new String[] {"1"}, true);
+        assertThrows(NumberFormatException.class,
+                () -> builder.add(new String[] {"one"}, false));
+    }
+
+    @Test
+    void rejectsRowsOfTheWrongLength() {
+        var builder = new Dataset.Builder(List.of("a", "b"), "class");
+        assertThrows(IllegalArgumentException.class,
+                () -> builder.add(new String[] {"x"}, true));
+    }
+
+    @Test
+    void encodesRecordsLikeTheBuilder() {
+        var data = TestData.load(TestData.JOBS);
+        assertEquals("status", data.classAttribute());
+        assertEquals(215, data.size());
+        assertTrue(data.isNumeric(data.indexOf("mba_percent")));
+        assertFalse(data.isNumeric(data.indexOf("gender")));
+
+        var attributes = new java.util.ArrayList<String>();
+        for (int i = 0; i < data.attributeCount(); ++i)
+            attributes.add(data.attribute(i));
+        var builder = new Dataset.Builder(attributes, data.classAttribute());
+        for (int row = 0; row < data.size(); ++row) {
+            var example = TestData.example(data, row);
+            var values = new String[attributes.size()];
+            for (int i = 0; i < values.length; ++i)
+                values[i] = example.get(attributes.get(i));
+            builder.add(values, data.isPositive(row));
+        }
+        TestData.assertSameData(data, builder.build());
+    }
+
+    @Test
+    void buildsAnEmptyDataset() {
+        var data = new Dataset.Builder(List.of("a", "b"), "class").build();
+        assertEquals(0, data.size());
+        assertEquals(0, data.positives());
+        assertEquals(2, data.attributeCount());
+        assertFalse(data.isNumeric(0));
+        assertEquals(0, data.codes(0).limit());
+    }
+}
@@ -0,0 +1,124 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class DepthFirstTreeTest {
+    @Test
+    void learnsTheRestaurantExample() {
+        var data = TestData.load(TestData.RESTAURANTS);
+        var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1));
+        for (int row = 0; row < data.size(); ++row) // noise-free, so it fits
+            assertEquals(data.isPositive(row), tree.predict(TestData.example(data, row)));
+    }
+
+    @Test
+    void turnsAnEmptyDatasetIntoALeaf() {
+        var data = new Dataset.Builder(List.of("a", "b"), "class").build();
+        var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1));
+        assertEquals(0, tree.children.length);
+        assertEquals(-1, tree.attribute);
+        assertEquals(1, tree.compile().size());
+        assertTrue(tree.prune());
+    }
+
+    @Test
+    void turnsASingleClassIntoALeaf() {
+        var data = TestData.build(List.of("a", "x"), new String[][] {
+            {"p", "1"}, {"q", "2"}, {"r", "3"}}, new boolean[] {true, true, true});
+        var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1));
+        assertEquals("+", tree.rootAttribute);
+        assertEquals(0, tree.children.length);
+        assertTrue(tree.compile().predict(new double[] {0, 100}));
+    }
+
+    @Test
+    void learnsFromNumericalAttributesOnly() {
+        var data = new SyntheticData().setRows(5000).setCategorical()
+                .setNumeric(SyntheticData.Distribution.UNIFORM,
+                        SyntheticData.Distribution.NORMAL,
+                        SyntheticData.Distribution.EXPONENTIAL)
+                .setNoise(0).setSeed(7).dataset();
+        var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1));
+        tree.prune();
+        var compiled = tree.compile();
+
+        int correct = 0;
+        for (int row = 0; row < data.size(); ++row) {
+            boolean predicted = compiled.predict(TestData.features(data, row));
+            assertEquals(tree.predict(TestData.example(data, row)), predicted);
+            if (predicted == data.isPositive(row))
+                ++correct;
+        }
+        assertTrue(correct > 0.9 * data.size(), correct + " of " + data.size());
+    }
+
+    @Test
+    void keepsBinsThatShareALabel() {
+        var rows = new String[400][];
+        var classes = new boolean[rows.length];
+        for (int i = 0; i < rows.length; ++i) { // bins narrower than their labels
+            rows[i] = new String[] {String.format("%.3f", 1 + i % 8 / 1000.0)};
+            classes[i] = i % 2 == 0;
+        }
+        var data = TestData.build(List.of("x"), rows, classes);
+        var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1));
+        assertEquals(tree.arity(), tree.children.length);
+        var compiled = tree.compile();
+        for (int row = 0; row < data.size(); ++row) {
+            boolean predicted = compiled.predict(TestData.features(data, row));
+            assertEquals(predicted, tree.predict(TestData.example(data, row)), "row " + row);
+            if (row % 8 < 6) // values in bins of their own
+                assertEquals(data.isPositive(row), predicted, "row " + row);
+        }
+    }
+
+    @Test
+    void looksBeyondASampleWithoutGain() {
+        var rows = new String[40][];
+        var classes = new boolean[rows.length];
+        for (int i = 0; i < rows.length; ++i) { // only x tells the classes apart
+            rows[i] = new String[] {"k", "k", "k", "k", i % 2 == 0 ? "a" : "b"};
+            classes[i] = i % 2 == 0;
+        }
+        var data = TestData.build(List.of("c1", "c2", "c3", "c4", "x"), rows, classes);
+
+        for (long seed = 1; seed <= 20; ++seed) {
+            var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(seed)
+                    .sampleAttributes(1));
+            assertEquals("x", tree.rootAttribute, "seed " + seed);
+        }
+    }
+
+    @Test
+    void isReproducibleGivenTheSeed() {
+        var data = TestData.synthetic(20000, 3);
+        var first = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(5));
+        var second = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(5));
+        assertEquals(TestData.describe(first), TestData.describe(second));
+    }
+
+    @Test
+    void buildsTheSameTreeInParallel() {
+        var pool = new ForkJoinPool(4);
+        try {
+            for (var data : List.of(TestData.load(TestData.JOBS), TestData.synthetic(20000, 3))) {
+                var sequential = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(11));
+                var parallel = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(11)
+                        .scoreInParallel(pool).setScoringCutoff(0)
+                        .buildInParallel(pool).setBuildCutoff(0));
+                assertEquals(TestData.describe(sequential), TestData.describe(parallel));
+
+                sequential.prune();
+                parallel.prune();
+                assertEquals(TestData.describe(sequential), TestData.describe(parallel));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.List;
+import javax.tools.ToolProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GeneratedTreeTest {
+    @BeforeEach
+    void needsCompiler() {
+        assumeTrue(ToolProvider.getSystemJavaCompiler() != null, "no Java compiler");
+    }
+
+    @Test
+    void predictsLikeTheCompiledTree() {
+        for (var data : List.of(TestData.load(TestData.RESTAURANTS),
+                TestData.load(TestData.JOBS), TestData.synthetic(20000, 3))) {
+            var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1));
+            var compiled = tree.compile();
+            var generated = compiled.generate();
+            assertEquals(compiled.size(), generated.size());
+            for (int row = 0; row < data.size(); ++row) {
+                var features = TestData.features(data, row);
+                assertEquals(compiled.predict(features), generated.predict(features),
+                        "row " + row);
+            }
+        }
+    }
+
+    @Test
+    void predictsOddValuesLikeTheCompiledTree() {
+        for (var data : List.of(TestData.load(TestData.JOBS), TestData.synthetic(20000, 3))) {
+            var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1));
+            var compiled = tree.compile();
+            var generated = compiled.generate();
+            for (int row = 0; row < data.size(); row += 97) {
+                for (int a = 0; a < data.attributeCount(); ++a) {
+                    for (double value : oddValues(tree, a)) {
+                        var features = TestData.features(data, row);
+                        features[a] = value;
+                        assertEquals(compiled.predict(features), generated.predict(features),
+                                "row " + row + ", " + data.attribute(a) + " = " + value);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void predictsUnknownValuesLikeTheCompiledTree() {
+        var data = TestData.load(TestData.RESTAURANTS);
+        var compiled = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1)).compile();
+        var generated = compiled.generate();
+        for (int row = 0; row < data.size(); ++row) {
+            for (int a = 0; a < data.attributeCount(); ++a) {
+                if (data.isNumeric(a))
+                    continue;
+                var example = TestData.example(data, row);
+                example.put(data.attribute(a), "never seen");
+                assertEquals(compiled.predict(example), generated.predict(example),
+                        "row " + row + ", " + data.attribute(a));
+            }
+        }
+    }
+
+    /**
+     * Values outside what the training data encodes to: the cut points and
+     * their neighbours, NaN and infinities for numbers, and codes that are
+     * negative, fractional or past the dictionary for categories.
+     */
+    private static double[] oddValues(DecisionTree tree, int attribute) {
+        if (tree.data.isNumeric(attribute)) {
+            var cuts = tree.attributeValues.getCutPoints(attribute);
+            var values = new double[3 * cuts.length + 3];
+            for (int i = 0; i < cuts.length; ++i) {
+                values[3 * i] = cuts[i];
+                values[3 * i + 1] = Math.nextDown(cuts[i]);
+                values[3 * i + 2] = Math.nextUp(cuts[i]);
+            }
+            values[3 * cuts.length] = Double.NaN;
+            values[3 * cuts.length + 1] = Double.NEGATIVE_INFINITY;
+            values[3 * cuts.length + 2] = Double.POSITIVE_INFINITY;
+            return values;
+        }
+
+        int codes = tree.data.dictionary(attribute).size();
+        return new double[] {-1, -0.5, 0.5, codes - 0.5, codes, codes + 1, Double.NaN,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+    }
+}
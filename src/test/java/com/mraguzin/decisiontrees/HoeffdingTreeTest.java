@@ -0,0 +1,129 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class HoeffdingTreeTest {
+    /**
+     * Row i of a stream on which x decides the class and y does not.
+     */
+    private static String[] xDecides(int i) {
+        return new String[] {i % 2 == 0 ? "a" : "b", i / 2 % 2 == 0 ? "y0" : "y1"};
+    }
+
+    private static Dataset initial(int rows) {
+        var values = new String[rows][];
+        var classes = new boolean[rows];
+        for (int i = 0; i < rows; ++i) {
+            values[i] = xDecides(i);
+            classes[i] = i % 2 == 0;
+        }
+        return TestData.build(List.of("x", "y"), values, classes);
+    }
+
+    @Test
+    void waitsForTheGracePeriod() {
+        var tree = new HoeffdingTree(initial(50), 0.05, new BuildOptions().setSeed(1));
+        int examples = 50;
+        for (; examples < 199; ++examples)
+            tree.update(xDecides(examples), examples % 2 == 0);
+        assertEquals(-1, tree.attribute);
+
+        tree.update(xDecides(examples), examples % 2 == 0);
+        assertEquals("x", tree.rootAttribute);
+    }
+
+    @Test
+    void convergesToTheBatchLearnersSplit() {
+        // categorical attributes with few values only, so that the batch
+        // learner scores all of them too
+        var settings = new SyntheticData().setNumeric().setRuleDepth(1).setNoise(0.05)
+                .setSeed(7);
+        var stream = settings.setRows(50000).dataset();
+        var tree = new HoeffdingTree(settings.setRows(1000).dataset(), 0.05,
+                new BuildOptions().setSeed(1));
+        tree.update(stream);
+
+        var batch = new DepthFirstTree(stream, 0.05, new BuildOptions().setSeed(1));
+        assertEquals(batch.rootAttribute, tree.rootAttribute);
+        var compiled = tree.compile();
+        int correct = 0;
+        for (int row = 0; row < stream.size(); ++row) {
+            if (compiled.predict(TestData.features(stream, row)) == stream.isPositive(row))
+                ++correct;
+        }
+        assertTrue(correct > 0.9 * stream.size(), correct + " of " + stream.size());
+    }
+
+    @Test
+    void remapsTheCodesOfABatch() {
+        var tree = new HoeffdingTree(initial(4), 0.05, new BuildOptions().setSeed(1)
+                .setGracePeriod(20));
+        var values = new String[200][];
+        var classes = new boolean[values.length];
+        for (int i = 0; i < values.length; ++i) { // b comes first, so it gets code 0
+            values[i] = xDecides(i + 1);
+            classes[i] = i % 2 == 1;
+        }
+        tree.update(TestData.build(List.of("y", "x"), swap(values), classes));
+
+        assertEquals("x", tree.rootAttribute);
+        assertTrue(tree.predict(Map.of("x", "a", "y", "y0")));
+        assertFalse(tree.predict(Map.of("x", "b", "y", "y0")));
+    }
+
+    private static String[][] swap(String[][] rows) {
+        var swapped = new String[rows.length][];
+        for (int i = 0; i < rows.length; ++i)
+            swapped[i] = new String[] {rows[i][1], rows[i][0]};
+        return swapped;
+    }
+
+    @Test
+    void splitsDespiteUnseenValues() {
+        var values = new String[50][];
+        var classes = new boolean[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = new String[] {"n" + i % 5, i % 2 == 0 ? "s0" : "s1"};
+            classes[i] = i % 2 == 0;
+        }
+        var tree = new HoeffdingTree(TestData.build(List.of("noise", "signal"), values,
+                classes), 0.05, new BuildOptions().setSeed(1));
+
+        for (int i = 0; i < 20000; ++i) { // noise only takes values never seen before
+            boolean positive = i % 2 == 0;
+            tree.update(new String[] {"m" + i, positive ? "s0" : "s1"},
+                    i % 10 == 0 ? !positive : positive);
+        }
+        assertEquals("signal", tree.rootAttribute);
+        assertTrue(tree.predict(Map.of("noise", "m0", "signal", "s0")));
+        assertFalse(tree.predict(Map.of("noise", "m0", "signal", "s1")));
+
+        tree.update(new String[] {"n0", "s2"}, true); // stops at the root
+        assertEquals("signal", tree.rootAttribute);
+    }
+
+    @Test
+    void learnsOnAfterPruning() {
+        var tree = new HoeffdingTree(initial(50), 0.05, new BuildOptions().setSeed(1));
+        for (int i = 50; i < 300; ++i)
+            tree.update(xDecides(i), i % 2 == 0);
+        assertEquals("x", tree.rootAttribute);
+
+        for (int i = 0; i < 100000; ++i) // now neither attribute matters
+            tree.update(xDecides(i), i / 2 % 2 == 0 ^ i / 4 % 2 == 0);
+        assertTrue(tree.prune());
+        assertEquals(-1, tree.attribute);
+
+        for (int i = 0; i < 1000; ++i) // and then only y does
+            tree.update(xDecides(i), i / 2 % 2 == 0);
+        assertEquals("y", tree.rootAttribute);
+        assertTrue(tree.predict(Map.of("x", "a", "y", "y0")));
+        assertFalse(tree.predict(Map.of("x", "a", "y", "y1")));
+    }
+}
@@ -0,0 +1,129 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedTreeTest {
+    @TempDir
+    Path dir;
+    private Dataset data;
+    private Path model;
+    private byte[] bytes;
+
+    @BeforeEach
+    void saveModel() throws IOException {
+        data = TestData.synthetic(20000, 3);
+        model = dir.resolve("tree.dtm");
+        new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1)).compile().save(model);
+        bytes = Files.readAllBytes(model);
+    }
+
+    @Test
+    void predictsLikeTheCompiledTree() throws IOException {
+        for (var data : List.of(this.data, TestData.load(TestData.JOBS))) {
+            var compiled = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1))
+                    .compile();
+            compiled.save(model);
+            var mapped = MappedTree.load(model);
+            assertEquals(compiled.size(), mapped.size());
+            for (int row = 0; row < data.size(); ++row) {
+                var features = TestData.features(data, row);
+                assertEquals(compiled.predict(features), mapped.predict(features), "row " + row);
+            }
+        }
+    }
+
+    @Test
+    void rejectsTruncatedFiles() throws IOException {
+        for (int length : new int[] {0, 3, 8, 20, bytes.length / 2, bytes.length - 1}) {
+            var truncated = dir.resolve("truncated" + length + ".dtm");
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> MappedTree.load(truncated), length + " bytes");
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        var csv = dir.resolve("data.csv");
+        Files.writeString(csv, "a,b,class\n1,2,yes\n");
+        assertThrows(IOException.class, () -> MappedTree.load(csv));
+    }
+
+    @Test
+    void rejectsCorruptNodeTables() throws IOException {
+        var tables = ByteBuffer.wrap(bytes);
+        skipHeader(tables);
+        int n = tables.getInt();
+        int t = tables.getInt();
+        int start = (tables.position() + Double.BYTES - 1) & -Double.BYTES;
+        int feature = start + t * Double.BYTES;
+        int childOffset = feature + n * Integer.BYTES;
+        int arity = childOffset + n * Integer.BYTES;
+        int thresholdOffset = arity + n * Integer.BYTES;
+        int numeric = -1; // some node splitting on a numerical attribute
+        for (int i = 0; i < n && numeric == -1; ++i) {
+            if (tables.getInt(thresholdOffset + i * Integer.BYTES) >= 0)
+                numeric = i;
+        }
+
+        assertCorrupt(feature, data.attributeCount());
+        assertCorrupt(feature, -2);
+        assertCorrupt(childOffset, 0);
+        assertCorrupt(childOffset, n);
+        assertCorrupt(arity, n);
+        assertCorrupt(arity, 0);
+        assertCorrupt(thresholdOffset + numeric * Integer.BYTES, t);
+        assertCorrupt(thresholdOffset + numeric * Integer.BYTES, -2);
+        assertCorrupt(thresholdOffset, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void rejectsCorruptLengths() throws IOException {
+        int name = ByteBuffer.wrap(bytes).getInt(12); // of the first attribute
+        for (int value : new int[] {-1, Integer.MIN_VALUE, Integer.MAX_VALUE, bytes.length}) {
+            assertCorrupt(8, value); // attribute count
+            assertCorrupt(12, value); // name length
+        }
+        for (int value : new int[] {-2, Integer.MAX_VALUE, bytes.length})
+            assertCorrupt(16 + name, value); // dictionary size
+    }
+
+    /**
+     * Overwrites an int of the saved model and checks that the result does
+     * not load.
+     */
+    private void assertCorrupt(int position, int value) throws IOException {
+        var corrupt = ByteBuffer.wrap(bytes.clone()).putInt(position, value).array();
+        var file = dir.resolve("corrupt.dtm");
+        Files.write(file, corrupt);
+        assertThrows(IOException.class, () -> MappedTree.load(file),
+                value + " at byte " + position);
+    }
+
+    private static void skipHeader(ByteBuffer buffer) {
+        buffer.getInt(); // magic
+        buffer.getInt(); // version
+        int attributes = buffer.getInt();
+        for (int i = 0; i < attributes; ++i) {
+            skipString(buffer);
+            int values = buffer.getInt();
+            for (int code = 0; code < values; ++code)
+                skipString(buffer);
+        }
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+}
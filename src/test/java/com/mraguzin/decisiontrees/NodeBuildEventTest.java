@@ -0,0 +1,49 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NodeBuildEventTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void isOnlyCreatedWhileRecorded() {
+        assertNull(NodeBuildEvent.beginIfEnabled());
+    }
+
+    @Test
+    void recordsEveryNode() throws IOException {
+        var data = TestData.synthetic(20000, 3);
+        assertEveryNodeRecorded(() -> new DepthFirstTree(data, 0.05,
+                new BuildOptions().setSeed(1)));
+        assertEveryNodeRecorded(() -> new BreadthFirstTree(data, 0.05,
+                new BuildOptions().setSeed(1)));
+    }
+
+    private void assertEveryNodeRecorded(Supplier<DecisionTree> build) throws IOException {
+        var file = dir.resolve("build.jfr");
+        DecisionTree tree;
+        try (var recording = new Recording()) {
+            recording.enable(NodeBuildEvent.class).withoutThreshold();
+            recording.start();
+            tree = build.get();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        long recorded = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals(
+                        "com.mraguzin.decisiontrees.NodeBuild"))
+                .count();
+        assertEquals(tree.compile().size(), recorded);
+    }
+}
@@ -0,0 +1,106 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ParallelCsvLoaderTest {
+    private static final int CHUNK_SIZE = 1 << 23; // bytes per parsing task
+
+    @TempDir
+    Path dir;
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void loadsWhatTheSequentialLoaderLoads() throws IOException {
+        var synthetic = dir.resolve("synthetic.csv");
+        new SyntheticData().setRows(20000).setSeed(3).write(synthetic);
+        for (var file : new Path[] {TestData.RESTAURANTS, TestData.JOBS, synthetic})
+            TestData.assertSameData(CsvLoader.load(file, TestData::isPositive), load(file));
+    }
+
+    @Test
+    void findsRecordsAcrossChunks() throws IOException {
+        var file = dir.resolve("quoted.csv");
+        var csv = new StringBuilder("kind,note,x,class\n");
+        int headerEnd = csv.length();
+        int row = 0;
+        for (int boundary = 1; boundary <= 2; ++boundary) {
+            long at = headerEnd + (long)boundary * CHUNK_SIZE;
+            while (csv.length() < at - 300)
+                appendRow(csv, row++);
+
+            // a record whose quoted note spans the chunk boundary, with quotes
+            // and newlines on both of its sides
+            csv.append("k,\"");
+            for (int line = 0; line < 12; ++line)
+                csv.append("a \"\"quoted\"\", comma-separated line ").append(line).append('\n');
+            csv.append("\",1.5,yes\n");
+            assertTrue(csv.length() > at);
+        }
+        for (int i = 0; i < 1000; ++i)
+            appendRow(csv, row++);
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+
+        var expected = CsvLoader.load(file, TestData::isPositive);
+        assertEquals(row + 2, expected.size());
+        TestData.assertSameData(expected, load(file));
+    }
+
+    private static void appendRow(StringBuilder csv, int row) {
+        csv.append("k").append(row % 7).append(',');
+        if (row % 3 == 0)
+            csv.append("\"n").append(row % 50).append("\nmore, \"\"of it\"\"\"");
+        else
+            csv.append('n').append(row % 50);
+        csv.append(',').append(row * 0.5).append(',').append(row % 5 == 0 ? "no" : "yes")
+                .append('\n');
+    }
+
+    @Test
+    void loadsSmallFiles() throws IOException {
+        var file = dir.resolve("small.csv");
+        for (var csv : new String[] {"a,b,class\n", "a,b,class", "a,b,class\r\np,1,yes\r\n",
+            "\n\na,b,class\np,1,yes\nq,2,no", "a,b,class\n\"p\nq\",1,no\n"}) {
+            Files.writeString(file, csv, StandardCharsets.UTF_8);
+            TestData.assertSameData(CsvLoader.load(file, TestData::isPositive), load(file));
+        }
+    }
+
+    @Test
+    void takesTheClassFromANamedColumn() throws IOException {
+        var file = dir.resolve("named.csv");
+        Files.writeString(file, "label,a,x\nyes,p,1\nno,q,2\n", StandardCharsets.UTF_8);
+        TestData.assertSameData(CsvLoader.load(file, "label", TestData::isPositive,
+                StandardCharsets.UTF_8), ParallelCsvLoader.load(file, "label",
+                TestData::isPositive, StandardCharsets.UTF_8, pool));
+        assertThrows(IllegalArgumentException.class, () -> ParallelCsvLoader.load(file,
+                "missing", TestData::isPositive, StandardCharsets.UTF_8, pool));
+    }
+
+    @Test
+    void rejectsRecordsOfTheWrongLength() throws IOException {
+        var file = dir.resolve("ragged.csv");
+        Files.writeString(file, "a,b,class\np,1,yes\nq,no\n", StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> load(file));
+    }
+
+    private Dataset load(Path file) throws IOException {
+        return ParallelCsvLoader.load(file, null, TestData::isPositive,
+                StandardCharsets.UTF_8, pool);
+    }
+}
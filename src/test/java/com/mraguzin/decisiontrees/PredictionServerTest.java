@@ -0,0 +1,101 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class PredictionServerTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void answersPredictionsAndBadRequests() throws Exception {
+        var data = TestData.load(TestData.RESTAURANTS);
+        var model = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1)).compile();
+        var server = start(model);
+        try {
+            var example = TestData.example(data, 0);
+            var response = post(server, "application/json", toJson(example));
+            assertEquals(200, response.statusCode());
+            assertEquals("{\"prediction\":\"" + (model.predict(example) ? '+' : '-') + "\"}\n",
+                    response.body());
+
+            example.remove(data.attribute(0));
+            assertEquals(400, post(server, "application/json", toJson(example)).statusCode());
+            assertEquals(400, post(server, "application/json", "{").statusCode());
+            assertEquals(400, post(server, "text/csv", "\"abc,d\n1\n").statusCode());
+            assertEquals(400, post(server, "text/csv", "a\n1\n").statusCode());
+            assertTrue(stats(server).contains("\"requests\":1,\"errors\":4,"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void answersFailuresWithInternalError() throws Exception {
+        var failing = new TreeModel(new String[] {"x"}, Collections.singletonList(null)) {
+            @Override
+            public boolean predict(double[] features) {
+                throw new IllegalStateException("broken model");
+            }
+
+            @Override
+            public int size() {
+                return 1;
+            }
+        };
+        var server = start(failing);
+        try {
+            var response = post(server, "application/json", "{\"x\":1}");
+            assertEquals(500, response.statusCode());
+            assertTrue(response.body().contains("broken model"), response.body());
+            assertEquals(500, post(server, "text/csv", "x\n1\n").statusCode());
+            assertTrue(stats(server).contains("\"requests\":0,\"errors\":2,"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static PredictionServer start(TreeModel model) throws IOException {
+        var server = new PredictionServer(model, new InetSocketAddress("localhost", 0));
+        server.start();
+        return server;
+    }
+
+    private HttpResponse<String> post(PredictionServer server, String type, String body)
+            throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(uri(server, "/predict"))
+                .header("Content-Type", type)
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String stats(PredictionServer server) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder(uri(server, "/stats")).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private static URI uri(PredictionServer server, String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    private static String toJson(Map<String, String> example) {
+        var json = new StringBuilder("{");
+        for (var entry : example.entrySet()) {
+            if (json.length() > 1)
+                json.append(',');
+            json.append('"').append(entry.getKey()).append("\":\"").append(entry.getValue())
+                    .append('"');
+        }
+
+        return json.append('}').toString();
+    }
+}
@@ -0,0 +1,56 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PruningSweepTest {
+    private static final double[] LEVELS = {0, 0.001, 0.01, 0.05, 0.1, 0.2, 0.5};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void compilesWhatPruningWouldLeave() throws IOException {
+        for (var data : List.of(TestData.load(TestData.RESTAURANTS),
+                TestData.load(TestData.JOBS), TestData.synthetic(20000, 3))) {
+            for (long seed = 1; seed <= 3; ++seed) {
+                var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(seed));
+                var sweep = new PruningSweep(tree);
+                var models = sweep.compile(LEVELS);
+                for (int i = 0; i < LEVELS.length; ++i) {
+                    var pruned = new DepthFirstTree(data, LEVELS[i],
+                            new BuildOptions().setSeed(seed));
+                    if (LEVELS[i] > 0) // 0 means no pruning, as everywhere else
+                        pruned.prune();
+                    var expected = pruned.compile();
+                    var message = "level " + LEVELS[i] + ", seed " + seed;
+                    assertEquals(expected.size(), sweep.size(LEVELS[i]), message);
+                    assertArrayEquals(bytes(expected), bytes(sweep.compile(LEVELS[i])), message);
+                    assertArrayEquals(bytes(expected), bytes(models.get(i)), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void leavesTheTreeAlone() {
+        var data = TestData.synthetic(20000, 3);
+        var tree = new DepthFirstTree(data, 0.05, new BuildOptions().setSeed(1));
+        var before = TestData.describe(tree);
+        new PruningSweep(tree).compile(LEVELS);
+        assertEquals(before, TestData.describe(tree));
+    }
+
+    private byte[] bytes(CompiledTree model) throws IOException {
+        var file = dir.resolve("model.dtm");
+        model.save(file);
+        return Files.readAllBytes(file);
+    }
+}
@@ -0,0 +1,146 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class QuantileSketchTest {
+    private static final int N = 1_000_000;
+
+    /**
+     * The numbers 0 to n-1 in random order, so that the true rank of v is
+     * v+1.
+     */
+    private static double[] shuffled(int n, long seed) {
+        var values = new double[n];
+        for (int i = 0; i < n; ++i)
+            values[i] = i;
+        var random = new SplittableRandom(seed);
+        for (int i = n - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            double tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+        return values;
+    }
+
+    private static void assertWithinBound(QuantileSketch sketch, int n) {
+        assertEquals(n, sketch.count());
+        double bound = sketch.getEpsilon() * n;
+        for (int v = 0; v < n; v += n / 200) {
+            long error = Math.abs(sketch.rank(v) - (v + 1L));
+            assertTrue(error <= bound, "rank of " + v + " off by " + error);
+        }
+        for (double q = 0.01; q < 1; q += 0.01) {
+            double error = Math.abs(sketch.quantile(q) + 1 - q * n);
+            assertTrue(error <= bound, "quantile " + q + " off by " + error);
+        }
+    }
+
+    @Test
+    void staysWithinTheErrorBound() {
+        for (double epsilon : new double[] {0.05, 0.01, 0.001}) {
+            var random = new QuantileSketch(epsilon);
+            for (double value : shuffled(N, 1))
+                random.add(value);
+            assertWithinBound(random, N);
+
+            var ascending = new QuantileSketch(epsilon);
+            var descending = new QuantileSketch(epsilon);
+            for (int i = 0; i < N; ++i) {
+                ascending.add(i);
+                descending.add(N - 1 - i);
+            }
+            assertWithinBound(ascending, N);
+            assertWithinBound(descending, N);
+        }
+    }
+
+    @Test
+    void mergesWithinTheErrorBound() {
+        var values = shuffled(N, 2);
+        var merged = merge(values, 0.01, 7919);
+        assertWithinBound(merged, N);
+
+        var again = merge(values, 0.01, 7919);
+        for (int v = 0; v < N; v += 997)
+            assertEquals(merged.rank(v), again.rank(v));
+        for (double q = 0; q <= 1; q += 0.001)
+            assertEquals(merged.quantile(q), again.quantile(q));
+        assertArrayEquals(distinct(merged), distinct(again));
+
+        assertThrows(IllegalArgumentException.class, () -> merged.merge(
+                new QuantileSketch(0.05)));
+    }
+
+    /**
+     * Sketches the values in chunks of the given size and merges the chunks
+     * in order, as the approximate binning does.
+     */
+    private static QuantileSketch merge(double[] values, double epsilon, int chunkSize) {
+        var merged = new QuantileSketch(epsilon);
+        for (int from = 0; from < values.length; from += chunkSize) {
+            var chunk = new QuantileSketch(epsilon);
+            for (int i = from; i < Math.min(values.length, from + chunkSize); ++i)
+                chunk.add(values[i]);
+            merged.merge(chunk);
+        }
+        return merged;
+    }
+
+    private static double[] distinct(QuantileSketch sketch) {
+        var values = new double[sketch.retained()];
+        var weights = new long[1][values.length];
+        int n = QuantileSketch.distinct(new QuantileSketch[] {sketch}, values, weights);
+        return Arrays.copyOf(values, n);
+    }
+
+    @Test
+    void weighsEveryValueOnce() {
+        var values = shuffled(300_000, 3);
+        var sketches = new QuantileSketch[] {new QuantileSketch(0.01),
+            new QuantileSketch(0.01)};
+        for (int i = 0; i < values.length; ++i)
+            sketches[values[i] % 3 == 0 ? 0 : 1].add(Math.floor(values[i] / 10));
+
+        int retained = sketches[0].retained() + sketches[1].retained();
+        var distinct = new double[retained];
+        var weights = new long[2][retained];
+        int n = QuantileSketch.distinct(sketches, distinct, weights);
+        for (int s = 0; s < sketches.length; ++s) {
+            long total = 0;
+            for (int i = 0; i < n; ++i)
+                total += weights[s][i];
+            assertEquals(sketches[s].count(), total);
+        }
+        for (int i = 1; i < n; ++i)
+            assertTrue(distinct[i - 1] < distinct[i]);
+    }
+
+    @Test
+    void rejectsImpossibleBounds() {
+        for (double epsilon : new double[] {0, -0.1, 1, Double.NaN})
+            assertThrows(IllegalArgumentException.class, () -> new QuantileSketch(epsilon));
+    }
+
+    @Test
+    void binsAboutAsWellAsExactDiscretisation() {
+        var data = TestData.synthetic(20000, 3);
+        var cuts = new AttributeSet(data, new BuildOptions()).getCutPoints(4);
+        assertFalse(Arrays.equals(cuts, new AttributeSet(data, new BuildOptions()
+                .approximateDiscretisation(0.01)).getCutPoints(4))); // really sketched
+
+        double exact = CrossValidation.accuracy(new CrossValidation(data, 0.05,
+                new BuildOptions().setSeed(1)).kFold(5));
+        double approximate = CrossValidation.accuracy(new CrossValidation(data, 0.05,
+                new BuildOptions().setSeed(1).approximateDiscretisation(0.01)).kFold(5));
+        assertTrue(approximate > exact - 0.02, approximate + " against " + exact);
+    }
+}
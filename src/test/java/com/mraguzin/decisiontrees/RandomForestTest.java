@@ -0,0 +1,42 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RandomForestTest {
+    @Test
+    void isReproducibleGivenTheSeed() {
+        var data = TestData.synthetic(5000, 3);
+        var first = new RandomForest(data, 10, 0, new BuildOptions().setSeed(5));
+        var second = new RandomForest(data, 10, 0, new BuildOptions().setSeed(5));
+        assertEquals(first.size(), second.size());
+        assertEquals(first.getOutOfBagAccuracy(), second.getOutOfBagAccuracy());
+        assertArrayEquals(first.predict(data), second.predict(data));
+    }
+
+    @Test
+    void predictsBatchesLikeSingleExamples() {
+        var data = TestData.load(TestData.JOBS);
+        var forest = new RandomForest(data, 15, 0, new BuildOptions().setSeed(1));
+        var batch = forest.predict(data);
+        int correct = 0;
+        for (int row = 0; row < data.size(); ++row) {
+            assertEquals(forest.predict(TestData.features(data, row)), batch[row], "row " + row);
+            if (batch[row] == data.isPositive(row))
+                ++correct;
+        }
+        assertTrue(correct > 0.8 * data.size(), correct + " of " + data.size());
+        assertTrue(forest.getOutOfBagAccuracy() > 0.6, "" + forest.getOutOfBagAccuracy());
+    }
+
+    @Test
+    void needsATree() {
+        var data = TestData.load(TestData.RESTAURANTS);
+        assertThrows(IllegalArgumentException.class,
+                () -> new RandomForest(data, 0, 0, new BuildOptions()));
+    }
+}
@@ -0,0 +1,114 @@
+package com.mraguzin.decisiontrees;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Datasets and comparisons shared by the tests.
+ * @author mraguzin
+ */
+final class TestData {
+    static final Path RESTAURANTS = Path.of("examples", "restaurants.csv");
+    static final Path JOBS = Path.of("examples", "Job_Placement_Data.csv");
+
+    private TestData() {
+    }
+
+    static boolean isPositive(String classification) {
+        return !classification.toLowerCase().contains("no");
+    }
+
+    /**
+     * Loads one of the example files the way the original learner did, from a
+     * list of parsed records.
+     */
+    static Dataset load(Path file) {
+        try (var reader = Files.newBufferedReader(file);
+                var parser = CsvLoader.WITH_HEADER.parse(reader)) {
+            var header = parser.getHeaderNames();
+            return Dataset.fromRecords(parser.getHeaderMap(), header.get(header.size() - 1),
+                    TestData::isPositive, parser.getRecords());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * A dataset large enough for every node size cutoff to matter, with
+     * categorical and numerical attributes.
+     */
+    static Dataset synthetic(int rows, long seed) {
+        return new SyntheticData().setRows(rows).setSeed(seed).setNoise(0.1).dataset();
+    }
+
+    static Dataset build(List<String> attributes, String[][] rows, boolean[] classes) {
+        var builder = new Dataset.Builder(attributes, "class");
+        for (int i = 0; i < rows.length; ++i)
+            builder.add(rows[i], classes[i]);
+        return builder.build();
+    }
+
+    /**
+     * Describes a tree canonically: every node with its children in value
+     * code order, so that equal trees give equal strings.
+     */
+    static String describe(DecisionTree tree) {
+        var out = new StringBuilder(tree.rootAttribute);
+        if (tree.children.length > 0) {
+            out.append('{');
+            for (int code = 0; code < tree.children.length; ++code)
+                out.append(tree.attributeValues.getLabel(tree.attribute, code)).append(':')
+                        .append(describe(tree.children[code])).append(',');
+            out.append('}');
+        }
+
+        return out.toString();
+    }
+
+    static void assertSameData(Dataset expected, Dataset actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.classAttribute(), actual.classAttribute());
+        assertEquals(expected.attributeCount(), actual.attributeCount());
+        assertEquals(expected.classes(), actual.classes());
+        for (int i = 0; i < expected.attributeCount(); ++i) {
+            assertEquals(expected.attribute(i), actual.attribute(i));
+            assertEquals(expected.isNumeric(i), actual.isNumeric(i), expected.attribute(i));
+            assertEquals(expected.dictionary(i), actual.dictionary(i), expected.attribute(i));
+            if (expected.isNumeric(i))
+                assertEquals(expected.numbers(i), actual.numbers(i), expected.attribute(i));
+            else
+                assertEquals(expected.codes(i), actual.codes(i), expected.attribute(i));
+        }
+    }
+
+    /**
+     * Gets the examples of a dataset as the string maps predict() takes.
+     */
+    static Map<String, String> example(Dataset data, int row) {
+        var example = new TreeMap<String, String>();
+        for (int i = 0; i < data.attributeCount(); ++i) {
+            example.put(data.attribute(i), data.isNumeric(i)
+                    ? Double.toString(data.numbers(i).get(row))
+                    : data.dictionary(i).get(data.codes(i).get(row)));
+        }
+
+        return example;
+    }
+
+    /**
+     * Gets an example in the encoded form of {@link TreeModel#predict(double[])}.
+     */
+    static double[] features(Dataset data, int row) {
+        var features = new double[data.attributeCount()];
+        for (int i = 0; i < features.length; ++i)
+            features[i] = data.isNumeric(i) ? data.numbers(i).get(row) : data.codes(i).get(row);
+        return features;
+    }
+}